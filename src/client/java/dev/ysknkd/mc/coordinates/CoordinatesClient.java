@@ -4,22 +4,36 @@ import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
+import dev.ysknkd.mc.coordinates.command.ChannelCommand;
+import dev.ysknkd.mc.coordinates.command.FollowCommand;
+import dev.ysknkd.mc.coordinates.command.NearCommand;
 import dev.ysknkd.mc.coordinates.config.Config;
 import dev.ysknkd.mc.coordinates.event.CoordinatesListBinding;
 import dev.ysknkd.mc.coordinates.event.CoordinatesSaveKeyBinding;
 import dev.ysknkd.mc.coordinates.hud.CoordinatesRenderer;
 import dev.ysknkd.mc.coordinates.hud.Notification;
 import dev.ysknkd.mc.coordinates.hud.PlayerIndicatorRenderer;
+import dev.ysknkd.mc.coordinates.network.FollowClientHandler;
+import dev.ysknkd.mc.coordinates.network.HandshakeClientHandler;
 import dev.ysknkd.mc.coordinates.network.PlayerCoordinatesHandler;
 import dev.ysknkd.mc.coordinates.network.ShareCoordinatesClientHandler;
 import dev.ysknkd.mc.coordinates.network.PlayerLogoutClientHandler;
+import dev.ysknkd.mc.coordinates.network.WaypointSyncClientHandler;
 import dev.ysknkd.mc.coordinates.hud.IndicatorRenderer;
 import dev.ysknkd.mc.coordinates.store.CoordinatesDataManager;
+import dev.ysknkd.mc.coordinates.util.BackgroundWriter;
 import dev.ysknkd.mc.coordinates.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @Environment(EnvType.CLIENT)
 public class CoordinatesClient implements ClientModInitializer {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    // Longest the client waits at shutdown for data still being written
+    private static final long SHUTDOWN_WRITE_TIMEOUT_MILLIS = 5000;
+
     @Override
     public void onInitializeClient() {
         CoordinatesSaveKeyBinding.register();
@@ -30,9 +44,16 @@ public class CoordinatesClient implements ClientModInitializer {
         IndicatorRenderer.register();
         PlayerIndicatorRenderer.register();
 
+        HandshakeClientHandler.register();
         ShareCoordinatesClientHandler.register();
         PlayerCoordinatesHandler.register();
         PlayerLogoutClientHandler.register();
+        WaypointSyncClientHandler.register();
+        FollowClientHandler.register();
+
+        ChannelCommand.register();
+        FollowCommand.register();
+        NearCommand.register();
 
         // At login: clear and load storage settings as necessary
         net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
@@ -42,16 +63,24 @@ public class CoordinatesClient implements ClientModInitializer {
             Config.load(Util.createWorldIdentifier(client));
         });
 
+        // Every tick: write the changes made since the last tick
+        net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            CoordinatesDataManager.flush();
+        });
+
         // At logout: save data to storage
         net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
             CoordinatesDataManager.save();
             Config.save();
         });
 
-        // On client shutdown: save data
+        // On client shutdown: save data and give the background writes a bounded time to finish
         net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
             CoordinatesDataManager.save();
             Config.save();
-        });    
+            if (!BackgroundWriter.awaitPending(SHUTDOWN_WRITE_TIMEOUT_MILLIS)) {
+                LOGGER.warn("Coordinate data was still being written at shutdown");
+            }
+        });
     }
 } 
\ No newline at end of file
@@ -0,0 +1,42 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.argument;
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.literal;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.protocol.game.ServerboundChatCommandPacket;
+
+/**
+ * Passes {@code /ml channel ...} on to the server.
+ * Fabric only hands a client command to the server when its root is unknown or fails to parse, so the
+ * client's own {@code /ml} (which opens the list) would otherwise answer the server's subcommands with an error.
+ */
+public class ChannelCommand {
+
+    public static void register() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> register(dispatcher));
+    }
+
+    static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+        dispatcher.register(literal("ml")
+            .then(literal("channel")
+                .executes(context -> forward(context))
+                .then(argument("arguments", StringArgumentType.greedyString())
+                    .executes(context -> forward(context)))));
+    }
+
+    private static int forward(CommandContext<FabricClientCommandSource> context) {
+        ClientPacketListener connection = context.getSource().getClient().getConnection();
+        if (connection == null) {
+            return 0;
+        }
+        // Sent as is rather than through sendCommand, which would run the client commands again
+        connection.send(new ServerboundChatCommandPacket(context.getInput()));
+        return 1;
+    }
+}
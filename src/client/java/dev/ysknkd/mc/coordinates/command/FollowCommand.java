@@ -0,0 +1,77 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.argument;
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.literal;
+
+import java.util.Set;
+import java.util.UUID;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.network.FollowClientHandler;
+import dev.ysknkd.mc.coordinates.store.PlayerCoordinates;
+import dev.ysknkd.mc.coordinates.store.PlayerCoordinatesCache;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.network.chat.Component;
+
+/**
+ * Client commands for follow mode, under {@code /mlc}.
+ * They stay off {@code /ml}: Fabric would run them instead of passing the server's {@code /ml} subcommands on.
+ * <ul>
+ *     <li>{@code /mlc follow <player>}: receive the player's position at the follow rate</li>
+ *     <li>{@code /mlc unfollow [player]}: stop following the player, or everyone</li>
+ * </ul>
+ */
+public class FollowCommand {
+
+    public static void register() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> register(dispatcher));
+    }
+
+    static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+        dispatcher.register(literal("mlc")
+            .then(literal("follow")
+                .then(argument("player", StringArgumentType.word())
+                    .suggests((context, builder) -> {
+                        for (PlayerCoordinates entry : PlayerCoordinatesCache.getCoordinatesList()) {
+                            if (entry.name != null) {
+                                builder.suggest(entry.name);
+                            }
+                        }
+                        return builder.buildFuture();
+                    })
+                    .executes(context -> request(context, true))))
+            .then(literal("unfollow")
+                .executes(context -> unfollowAll(context))
+                .then(argument("player", StringArgumentType.word())
+                    .executes(context -> request(context, false)))));
+    }
+
+    private static int request(CommandContext<FabricClientCommandSource> context, boolean follow) {
+        String name = StringArgumentType.getString(context, "player");
+        PlayerCoordinates target = PlayerCoordinatesCache.findByName(name);
+        if (target == null) {
+            context.getSource().sendError(Component.translatable(CoordinatesApp.MOD_ID + ".follow.unknown_player", name));
+            return 0;
+        }
+        if (!FollowClientHandler.request(target.uuid, follow)) {
+            context.getSource().sendError(Component.translatable(CoordinatesApp.MOD_ID + ".follow.unsupported"));
+            return 0;
+        }
+        return 1;
+    }
+
+    private static int unfollowAll(CommandContext<FabricClientCommandSource> context) {
+        Set<UUID> followed = FollowClientHandler.getFollowed();
+        for (UUID uuid : followed) {
+            if (!FollowClientHandler.request(uuid, false)) {
+                context.getSource().sendError(Component.translatable(CoordinatesApp.MOD_ID + ".follow.unsupported"));
+                return 0;
+            }
+        }
+        return followed.size();
+    }
+}
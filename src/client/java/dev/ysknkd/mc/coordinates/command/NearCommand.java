@@ -0,0 +1,59 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.argument;
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.literal;
+
+import java.util.List;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.store.Coordinates;
+import dev.ysknkd.mc.coordinates.store.CoordinatesDataManager;
+import dev.ysknkd.mc.coordinates.util.Util;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.phys.Vec3;
+
+/**
+ * {@code /mlc near [n]}: lists the saved coordinates closest to the player in the current world.
+ */
+public class NearCommand {
+
+    private static final int DEFAULT_COUNT = 5;
+    private static final int MAX_COUNT = 50;
+
+    public static void register() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> register(dispatcher));
+    }
+
+    static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+        dispatcher.register(literal("mlc")
+            .then(literal("near")
+                .executes(context -> listNearest(context, DEFAULT_COUNT))
+                .then(argument("count", IntegerArgumentType.integer(1, MAX_COUNT))
+                    .executes(context -> listNearest(context, IntegerArgumentType.getInteger(context, "count"))))));
+    }
+
+    private static int listNearest(CommandContext<FabricClientCommandSource> context, int count) {
+        FabricClientCommandSource source = context.getSource();
+        Vec3 position = source.getPosition();
+        List<Coordinates> nearest = CoordinatesDataManager.getNearestEntries(
+            Util.getCurrentWorldName(source.getClient()), position.x, position.y, position.z, count);
+        if (nearest.isEmpty()) {
+            source.sendFeedback(Component.translatable(CoordinatesApp.MOD_ID + ".command.near.none"));
+            return 0;
+        }
+        source.sendFeedback(Component.translatable(CoordinatesApp.MOD_ID + ".command.near.header", nearest.size()));
+        for (Coordinates entry : nearest) {
+            double distance = position.distanceTo(new Vec3(entry.x, entry.y, entry.z));
+            String description = entry.description != null && !entry.description.isEmpty() ? entry.description : "-";
+            source.sendFeedback(Component.translatable(CoordinatesApp.MOD_ID + ".command.near.entry",
+                description, (int) Math.floor(entry.x), (int) Math.floor(entry.y), (int) Math.floor(entry.z),
+                String.format("%.1f", distance)));
+        }
+        return nearest.size();
+    }
+}
@@ -3,14 +3,17 @@ package dev.ysknkd.mc.coordinates.config;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.util.BackgroundWriter;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Configuration for saving coordinate settings.
@@ -25,6 +28,10 @@ public class Config {
     private static int playerIndicatorMinDistance = DEFAULT_PLAYER_INDICATOR_MIN_DISTANCE;
     // Stores the current worldId (initially "unknown")
     private static String currentWorldId = "unknown";
+    // Changed settings are saved once they were left alone for this long
+    private static final long AUTOSAVE_DELAY_MILLIS = 2000;
+    // Latest write of the configuration file, which load waits for
+    private static Future<?> pendingWrite;
 
     // Internal structure for JSON serialization of configuration data
     private static class ConfigData {
@@ -51,6 +58,7 @@ public class Config {
      */
     public static void load(String worldId) {
         currentWorldId = worldId; // Store the worldId internally
+        awaitPendingWrite();
         Path configFile = getConfigFilePath(worldId);
         if (!Files.exists(configFile)) {
             return;
@@ -73,25 +81,43 @@ public class Config {
     
     /**
      * Saves the current configuration to the file corresponding to the stored worldId.
-     * Automatically creates the target directory if it does not exist.
+     * The file is written in the background and replaced atomically; the target directory is
+     * created if it does not exist.
      */
     public static void save() {
+        write(0);
+    }
+
+    /**
+     * Saves the configuration shortly after the last of a series of changes.
+     */
+    private static void scheduleSave() {
+        write(AUTOSAVE_DELAY_MILLIS);
+    }
+
+    private static void write(long delayMillis) {
         Path configFile = getConfigFilePath(Config.currentWorldId);
-        try {
-            Files.createDirectories(configFile.getParent());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        Gson gson = new Gson();
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("defaultPinState", defaultPinState);
         jsonObject.addProperty("playerIndicatorMinDistance", playerIndicatorMinDistance);
-        
-        try (Writer writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
-            gson.toJson(jsonObject, writer);
-        } catch (IOException e) {
-            e.printStackTrace();
+        String json = new Gson().toJson(jsonObject);
+
+        pendingWrite = BackgroundWriter.debounce(configFile, delayMillis,
+                () -> BackgroundWriter.writeAtomically(configFile, json));
+    }
+
+    private static void awaitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // Nothing to wait for
         }
+        pendingWrite = null;
     }
     
     /**
@@ -101,6 +127,7 @@ public class Config {
      */
     public static void setDefaultPinState(boolean state) {
         defaultPinState = state;
+        scheduleSave();
     }
     
     /**
@@ -117,6 +144,7 @@ public class Config {
      */
     public static void toggleDefaultPinState() {
         defaultPinState = !defaultPinState;
+        scheduleSave();
     }
 
     /**
@@ -126,6 +154,7 @@ public class Config {
      */
     public static void setPlayerIndicatorMinDistance(int distance) {
         playerIndicatorMinDistance = distance;
+        scheduleSave();
     }
 
     /**
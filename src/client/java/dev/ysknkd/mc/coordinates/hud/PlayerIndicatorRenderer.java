@@ -2,6 +2,7 @@ package dev.ysknkd.mc.coordinates.hud;
 
 import dev.ysknkd.mc.coordinates.config.Config;
 import dev.ysknkd.mc.coordinates.store.PlayerCoordinatesCache;
+import dev.ysknkd.mc.coordinates.network.FollowClientHandler;
 import dev.ysknkd.mc.coordinates.store.PlayerCoordinates;
 import dev.ysknkd.mc.coordinates.util.IconTexture;
 import dev.ysknkd.mc.coordinates.util.Util;
@@ -93,6 +94,12 @@ public final class PlayerIndicatorRenderer implements HudElement {
             } else {
                 scale = maxScale - (float)((distance - nearDistance) / (farDistance - nearDistance)) * (maxScale - minScale);
             }
+            // Followed players stand out: full size, no fading and a gold label
+            boolean followed = FollowClientHandler.isFollowed(playerEntity.uuid);
+            if (followed) {
+                scale = maxScale;
+            }
+            int iconTint = followed ? 0xFFFFFFFF : tintColor;
 
             Optional<ScreenProjection.Coordinate> optionalCoord = ScreenProjection.projectWorldToGui(client, camera, worldPos, screenWidth, screenHeight);
             if (!optionalCoord.isPresent()) continue;
@@ -118,7 +125,7 @@ public final class PlayerIndicatorRenderer implements HudElement {
                 scaledIconSize, scaledIconSize,
                 faceSize, faceSize,
                 skinSize, skinSize,
-                tintColor
+                iconTint
             );
             context.blit(
                 RenderPipelines.GUI_TEXTURED,
@@ -128,12 +135,12 @@ public final class PlayerIndicatorRenderer implements HudElement {
                 scaledIconSize, scaledIconSize,
                 faceSize, faceSize,
                 skinSize, skinSize,
-                tintColor
+                iconTint
             );
 
             // Render distance text
             String distanceText = String.format("%.1f", distance);
-            int textColor = 0xAAFFFFFF; // Semi-transparent white
+            int textColor = followed ? 0xFFFFD700 : 0xAAFFFFFF; // Gold when followed, otherwise semi-transparent white
             int distanceTextWidth = client.font.width(distanceText);
             context.text(client.font, distanceText, screenX - distanceTextWidth / 2, screenY + 8, textColor, false);
 
@@ -0,0 +1,87 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.hud.Notification;
+import dev.ysknkd.mc.coordinates.store.PlayerCoordinates;
+import dev.ysknkd.mc.coordinates.store.PlayerCoordinatesCache;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.minecraft.network.chat.Component;
+
+/**
+ * Client side of follow mode.
+ * Asks the server to follow or stop following a player and keeps the set of players the server
+ * agreed to send at the follow rate.
+ */
+public class FollowClientHandler {
+
+    // Read by the HUD renderer
+    private static final Set<UUID> followed = ConcurrentHashMap.newKeySet();
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(FollowRequestPayload.ID, FollowRequestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(FollowStatusPayload.ID, FollowStatusPayload.CODEC);
+
+        ClientPlayNetworking.registerGlobalReceiver(FollowStatusPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(payload));
+        });
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> followed.clear());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> followed.clear());
+    }
+
+    /**
+     * @return Whether the server supports follow mode
+     */
+    public static boolean isSupported() {
+        return HandshakeClientHandler.getServerVersion() >= HandshakePayload.FOLLOW_VERSION
+            && ClientPlayNetworking.canSend(FollowRequestPayload.ID);
+    }
+
+    /**
+     * @return Whether the given player is followed
+     */
+    public static boolean isFollowed(UUID player) {
+        return followed.contains(player);
+    }
+
+    /**
+     * @return The players currently followed
+     */
+    public static Set<UUID> getFollowed() {
+        return Set.copyOf(followed);
+    }
+
+    /**
+     * Asks the server to start or stop following a player; the answer arrives as a status payload.
+     *
+     * @return false if the server does not support follow mode
+     */
+    public static boolean request(UUID player, boolean follow) {
+        if (!isSupported()) {
+            return false;
+        }
+        ClientPlayNetworking.send(new FollowRequestPayload(player, follow));
+        return true;
+    }
+
+    private static void receive(FollowStatusPayload payload) {
+        if (payload.following()) {
+            followed.add(payload.target());
+        } else {
+            followed.remove(payload.target());
+        }
+        String key = CoordinatesApp.MOD_ID + ".follow." + payload.reason().name().toLowerCase(Locale.ROOT);
+        Notification.show(Component.translatable(key, nameOf(payload.target())).getString());
+    }
+
+    private static String nameOf(UUID player) {
+        PlayerCoordinates entry = PlayerCoordinatesCache.get(player);
+        return entry != null && entry.name != null ? entry.name : player.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+
+/**
+ * Client side of the protocol version handshake.
+ * Announces the client's protocol version on join and remembers what the server answered.
+ */
+public class HandshakeClientHandler {
+
+    private static volatile int serverVersion = HandshakePayload.LEGACY_VERSION;
+    private static volatile DimensionTable dimensions = DimensionTable.EMPTY;
+    // Called on the client thread once the server answered the handshake
+    private static final List<Runnable> listeners = new ArrayList<>();
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(HandshakePayload.ID, HandshakePayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(HandshakePayload.ID, HandshakePayload.CODEC);
+
+        ClientPlayNetworking.registerGlobalReceiver(HandshakePayload.ID, (payload, context) -> {
+            context.client().execute(() -> {
+                dimensions = new DimensionTable(payload.dimensions());
+                serverVersion = Math.min(payload.version(), HandshakePayload.CURRENT_VERSION);
+                listeners.forEach(Runnable::run);
+            });
+        });
+
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
+            reset();
+            // Servers without the mod (or with an older one) never answer and stay on the legacy protocol
+            if (ClientPlayNetworking.canSend(HandshakePayload.ID)) {
+                sender.sendPacket(new HandshakePayload(HandshakePayload.CURRENT_VERSION, List.of()));
+            }
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> reset());
+    }
+
+    /**
+     * Registers a callback run on the client thread once the server answered the handshake, when the
+     * negotiated version is available through {@link #getServerVersion()}.
+     */
+    public static void registerListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return The protocol version negotiated with the current server
+     */
+    public static int getServerVersion() {
+        return serverVersion;
+    }
+
+    /**
+     * @return The dimension table received from the current server
+     */
+    public static DimensionTable getDimensions() {
+        return dimensions;
+    }
+
+    private static void reset() {
+        serverVersion = HandshakePayload.LEGACY_VERSION;
+        dimensions = DimensionTable.EMPTY;
+    }
+}
@@ -3,6 +3,8 @@ package dev.ysknkd.mc.coordinates.network;
 import dev.ysknkd.mc.coordinates.store.PlayerCoordinatesCache;
 import dev.ysknkd.mc.coordinates.store.PlayerCoordinates;
 
+import java.util.UUID;
+
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking.Context;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
@@ -11,16 +13,57 @@ public class PlayerCoordinatesHandler implements ClientPlayNetworking.PlayPayloa
 
     public static void register() {
         PayloadTypeRegistry.clientboundPlay().register(PlayerCoordinatesPayload.ID, PlayerCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(PlayerCoordinatesBatchPayload.ID, PlayerCoordinatesBatchPayload.CODEC);
         ClientPlayNetworking.registerGlobalReceiver(PlayerCoordinatesPayload.ID, new PlayerCoordinatesHandler());
+        ClientPlayNetworking.registerGlobalReceiver(PlayerCoordinatesBatchPayload.ID, PlayerCoordinatesHandler::receiveBatch);
+        PlayerDictionary.register();
     }
 
     @Override
     public void receive(PlayerCoordinatesPayload payload, Context context) {
         context.client().execute(() -> {
             if (context.client().player != null && !context.client().player.getUUID().equals(payload.uuid())) {
-                PlayerCoordinatesCache.update(new PlayerCoordinates(payload.uuid(), payload.x(), payload.y(), payload.z(), payload.name(), payload.world()));
+                apply(payload);
             }
         });
     }
 
+    /**
+     * Applies every entry of a batch in a single client-thread task.
+     */
+    private static void receiveBatch(PlayerCoordinatesBatchPayload batch, Context context) {
+        context.client().execute(() -> {
+            if (context.client().player == null) {
+                return;
+            }
+            UUID self = context.client().player.getUUID();
+            DimensionTable dimensions = HandshakeClientHandler.getDimensions();
+            for (PlayerDictionaryEntry entry : batch.entries()) {
+                PlayerDictionary.put(entry);
+            }
+            // Updates for retired ids (players that already logged out) are dropped
+            for (PlayerKeyframe keyframe : batch.keyframes()) {
+                PlayerDictionary.Entry player = PlayerDictionary.get(keyframe.id());
+                if (player != null && !self.equals(player.uuid())) {
+                    PlayerCoordinatesCache.update(new PlayerCoordinates(player.uuid(),
+                            Quantization.dequantize(keyframe.x()),
+                            Quantization.dequantize(keyframe.y()),
+                            Quantization.dequantize(keyframe.z()),
+                            player.name(),
+                            dimensions.nameOf(keyframe.dimension(), keyframe.world())));
+                }
+            }
+            for (PlayerCoordinatesDelta delta : batch.deltas()) {
+                PlayerDictionary.Entry player = PlayerDictionary.get(delta.id());
+                if (player != null) {
+                    PlayerCoordinatesCache.applyDelta(player.uuid(), delta.dx(), delta.dy(), delta.dz());
+                }
+            }
+        });
+    }
+
+    private static void apply(PlayerCoordinatesPayload payload) {
+        PlayerCoordinatesCache.update(new PlayerCoordinates(payload.uuid(), payload.x(), payload.y(), payload.z(), payload.name(), payload.world()));
+    }
+
 }
@@ -0,0 +1,59 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+
+/**
+ * Session ids announced by the server through {@link PlayerDictionaryEntry}, valid until the
+ * player logs out or the connection ends. Only accessed on the client thread.
+ */
+final class PlayerDictionary {
+
+    record Entry(UUID uuid, String name) {
+    }
+
+    private static final Int2ObjectOpenHashMap<Entry> ENTRIES = new Int2ObjectOpenHashMap<>();
+    private static final Object2IntOpenHashMap<UUID> IDS = new Object2IntOpenHashMap<>();
+
+    static {
+        IDS.defaultReturnValue(-1);
+    }
+
+    static void register() {
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> clear());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(PlayerDictionary::clear));
+    }
+
+    static void put(PlayerDictionaryEntry entry) {
+        Entry previous = ENTRIES.put(entry.id(), new Entry(entry.uuid(), entry.name()));
+        if (previous != null && !previous.uuid().equals(entry.uuid())) {
+            IDS.removeInt(previous.uuid());
+        }
+        IDS.put(entry.uuid(), entry.id());
+    }
+
+    /**
+     * @return The player announced under the id, or null if the id is unknown or retired
+     */
+    static Entry get(int id) {
+        return ENTRIES.get(id);
+    }
+
+    /**
+     * Retires the id of a player that logged out.
+     */
+    static void retire(UUID uuid) {
+        int id = IDS.removeInt(uuid);
+        if (id >= 0) {
+            ENTRIES.remove(id);
+        }
+    }
+
+    private static void clear() {
+        ENTRIES.clear();
+        IDS.clear();
+    }
+}
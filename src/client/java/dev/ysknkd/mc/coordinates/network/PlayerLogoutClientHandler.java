@@ -22,8 +22,9 @@ public class PlayerLogoutClientHandler implements ClientPlayNetworking.PlayPaylo
     public void receive(PlayerLogoutPayload payload, Context context) {
         Minecraft client = context.client();
         client.execute(() -> {
-            // Remove the logged-out player's data from the cache
+            // Remove the logged-out player's data from the cache and retire its session id
             PlayerCoordinatesCache.remove(payload.uuid());
+            PlayerDictionary.retire(payload.uuid());
         });
     }
 }
@@ -1,5 +1,9 @@
 package dev.ysknkd.mc.coordinates.network;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 import dev.ysknkd.mc.coordinates.CoordinatesApp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,32 +23,171 @@ public class ShareCoordinatesClientHandler {
         PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesPayload.ID, ShareCoordinatesPayload.CODEC);
         PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPayload.ID, ShareCoordinatesPayload.CODEC);
 
+        PayloadTypeRegistry.serverboundPlay().register(CompactShareCoordinatesPayload.ID, CompactShareCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(CompactShareCoordinatesPayload.ID, CompactShareCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesBatchPayload.ID, ShareCoordinatesBatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesBatchPayload.ID, ShareCoordinatesBatchPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesPatchPayload.ID, ShareCoordinatesPatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPatchPayload.ID, ShareCoordinatesPatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPatchBatchPayload.ID, ShareCoordinatesPatchBatchPayload.CODEC);
+
         ClientPlayNetworking.registerGlobalReceiver(ShareCoordinatesPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(payload));
+        });
+        ClientPlayNetworking.registerGlobalReceiver(CompactShareCoordinatesPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(payload.toShare(HandshakeClientHandler.getDimensions())));
+        });
+        ClientPlayNetworking.registerGlobalReceiver(ShareCoordinatesBatchPayload.ID, (payload, context) -> {
             context.client().execute(() -> {
-                try {
-                    CoordinatesDataManager.addOrUpdateEntry(new Coordinates(payload.uuid(), payload.x(), payload.y(), payload.z(), payload.description(), payload.world(), payload.pinned(), payload.icon()));
-                } catch (Exception e) {
-                    LOGGER.error("Failed to receive/decode payload", e);
+                DimensionTable dimensions = HandshakeClientHandler.getDimensions();
+                for (CompactShareCoordinatesPayload share : payload.shares()) {
+                    receive(share.toShare(dimensions));
                 }
             });
         });
+        ClientPlayNetworking.registerGlobalReceiver(ShareCoordinatesPatchPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(List.of(payload)));
+        });
+        ClientPlayNetworking.registerGlobalReceiver(ShareCoordinatesPatchBatchPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(payload.patches()));
+        });
+    }
+
+    private static void receive(ShareCoordinatesPayload payload) {
+        try {
+            Coordinates entry = new Coordinates(payload.uuid(), payload.x(), payload.y(), payload.z(), payload.description(), payload.world(), payload.pinned(), payload.icon());
+            entry.sender = payload.sender();
+            CoordinatesDataManager.addOrUpdateEntry(entry);
+        } catch (Exception e) {
+            LOGGER.error("Failed to receive/decode payload", e);
+        }
+    }
+
+    /**
+     * Applies edits of waypoints received before, in place, and asks the server for the waypoints
+     * the edits apply to but this client does not hold.
+     */
+    private static void receive(List<ShareCoordinatesPatchPayload> patches) {
+        List<UUID> missing = new ArrayList<>();
+        for (ShareCoordinatesPatchPayload patch : patches) {
+            Coordinates entry = CoordinatesDataManager.getEntry(patch.uuid());
+            if (entry == null || entry.stale && patch.sender().equals(entry.sender)) {
+                // The patch may not apply to what this client holds
+                missing.add(patch.uuid());
+            } else if (patch.sender().equals(entry.sender)) {
+                apply(entry, patch);
+            }
+        }
+        if (!missing.isEmpty()) {
+            WaypointSyncClientHandler.request(missing);
+        }
+    }
+
+    private static void apply(Coordinates entry, ShareCoordinatesPatchPayload patch) {
+        if (patch.has(ShareCoordinatesPatchPayload.DESCRIPTION)) {
+            entry.description = patch.description();
+        }
+        if (patch.has(ShareCoordinatesPatchPayload.PINNED)) {
+            CoordinatesDataManager.setPinned(entry, patch.pinned());
+        }
+        if (patch.has(ShareCoordinatesPatchPayload.ICON)) {
+            entry.icon = patch.icon().getName();
+        }
+        CoordinatesDataManager.updateVersion(entry);
+        CoordinatesDataManager.markChanged(entry);
     }
-    
+
     public static void send(Coordinates entry) {
         Minecraft client = Minecraft.getInstance();
         if (client.player != null) {
-            // Use the current player's UUID for the sender
-            ShareCoordinatesPayload payload = new ShareCoordinatesPayload(
-                    client.player.getUUID(),
-                    entry.uuid,
-                    entry.x,
-                    entry.y,
-                    entry.z,
-                    entry.description,
-                    entry.world,
-                    entry.pinned,
-                    entry.icon);
-            ClientPlayNetworking.send(payload);
+            ShareCoordinatesPayload payload = toPayload(client, entry);
+            if (HandshakeClientHandler.getServerVersion() >= HandshakePayload.COMPACT_VERSION
+                    && ClientPlayNetworking.canSend(CompactShareCoordinatesPayload.ID)) {
+                ClientPlayNetworking.send(CompactShareCoordinatesPayload.of(payload, HandshakeClientHandler.getDimensions()));
+            } else {
+                ClientPlayNetworking.send(payload);
+            }
+        }
+    }
+
+    /**
+     * Shares changes to some fields of an entry shared before: only those fields where the server
+     * supports patches, the whole entry otherwise.
+     *
+     * @param entry The changed entry
+     * @param fields The changed fields, as {@link ShareCoordinatesPatchPayload} flags
+     */
+    public static void sendPatch(Coordinates entry, int fields) {
+        Minecraft client = Minecraft.getInstance();
+        if (client.player == null) {
+            return;
+        }
+        if (HandshakeClientHandler.getServerVersion() < HandshakePayload.PATCH_VERSION
+                || !ClientPlayNetworking.canSend(ShareCoordinatesPatchPayload.ID)) {
+            send(entry);
+            return;
+        }
+        ClientPlayNetworking.send(new ShareCoordinatesPatchPayload(client.player.getUUID(), entry.uuid, fields,
+                entry.description, entry.pinned, WaypointIcon.fromName(entry.icon)));
+    }
+
+    /**
+     * Shares this player's entries again in full, for the server that asked for them after losing them.
+     * Entries that are no longer shared, or that were received from other players, are skipped.
+     *
+     * @param uuids The entries the server asked for
+     */
+    static void resend(List<UUID> uuids) {
+        List<Coordinates> entries = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            Coordinates entry = CoordinatesDataManager.getEntry(uuid);
+            if (entry != null && entry.share && entry.sender == null) {
+                entries.add(entry);
+            }
         }
+        sendAll(entries);
+    }
+
+    /**
+     * Shares many entries at once: in batches where the server supports them, one by one otherwise.
+     *
+     * @param entries The entries to share
+     */
+    public static void sendAll(List<Coordinates> entries) {
+        Minecraft client = Minecraft.getInstance();
+        if (client.player == null || entries.isEmpty()) {
+            return;
+        }
+        if (HandshakeClientHandler.getServerVersion() < HandshakePayload.COMPACT_VERSION
+                || !ClientPlayNetworking.canSend(ShareCoordinatesBatchPayload.ID)) {
+            entries.forEach(ShareCoordinatesClientHandler::send);
+            return;
+        }
+        DimensionTable dimensions = HandshakeClientHandler.getDimensions();
+        List<CompactShareCoordinatesPayload> batch = new ArrayList<>();
+        for (Coordinates entry : entries) {
+            batch.add(CompactShareCoordinatesPayload.of(toPayload(client, entry), dimensions));
+            if (batch.size() == ShareCoordinatesBatchPayload.MAX_SHARES) {
+                ClientPlayNetworking.send(new ShareCoordinatesBatchPayload(batch));
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            ClientPlayNetworking.send(new ShareCoordinatesBatchPayload(batch));
+        }
+    }
+
+    private static ShareCoordinatesPayload toPayload(Minecraft client, Coordinates entry) {
+        // Use the current player's UUID for the sender
+        return new ShareCoordinatesPayload(
+                client.player.getUUID(),
+                entry.uuid,
+                entry.x,
+                entry.y,
+                entry.z,
+                entry.description,
+                entry.world,
+                entry.pinned,
+                entry.icon);
     }
 }
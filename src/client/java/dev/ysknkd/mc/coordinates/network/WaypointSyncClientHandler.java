@@ -0,0 +1,95 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.store.Coordinates;
+import dev.ysknkd.mc.coordinates.store.CoordinatesDataManager;
+
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+
+/**
+ * Client side of the shared waypoint sync after joining.
+ * Sends the digest of the entries received from other players, and for each bucket the server
+ * reports as different asks for the entries that are missing or hold another version. Entries the
+ * server no longer shares are marked stale rather than taken over as this player's own.
+ */
+public class WaypointSyncClientHandler {
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(WaypointDigestPayload.ID, WaypointDigestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(WaypointManifestPayload.ID, WaypointManifestPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(WaypointRequestPayload.ID, WaypointRequestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(WaypointRequestPayload.ID, WaypointRequestPayload.CODEC);
+
+        ClientPlayNetworking.registerGlobalReceiver(WaypointManifestPayload.ID, (payload, context) -> {
+            context.client().execute(() -> receive(payload));
+        });
+        // The server lost waypoints this player patched and asks for them in full
+        ClientPlayNetworking.registerGlobalReceiver(WaypointRequestPayload.ID, (payload, context) -> {
+            context.client().execute(() -> ShareCoordinatesClientHandler.resend(payload.uuids()));
+        });
+        HandshakeClientHandler.registerListener(WaypointSyncClientHandler::sendDigest);
+    }
+
+    private static void sendDigest() {
+        if (HandshakeClientHandler.getServerVersion() < HandshakePayload.SYNC_VERSION
+                || !ClientPlayNetworking.canSend(WaypointDigestPayload.ID)) {
+            return;
+        }
+        WaypointDigest digest = new WaypointDigest();
+        for (Coordinates entry : CoordinatesDataManager.getEntries()) {
+            if (entry.sender != null && !entry.stale) {
+                digest.add(entry.uuid, entry.version);
+            }
+        }
+        List<Long> buckets = new ArrayList<>(WaypointDigest.BUCKETS);
+        for (long bucket : digest.buckets()) {
+            buckets.add(bucket);
+        }
+        ClientPlayNetworking.send(new WaypointDigestPayload(buckets));
+    }
+
+    private static void receive(WaypointManifestPayload payload) {
+        Map<UUID, Long> expected = new HashMap<>();
+        for (WaypointManifestPayload.Entry entry : payload.entries()) {
+            expected.put(entry.uuid(), entry.version());
+        }
+        // Entries the server no longer shares are kept, still attributed to their sender, but marked stale
+        for (Coordinates entry : CoordinatesDataManager.getEntries()) {
+            if (entry.sender != null && !entry.stale && WaypointDigest.bucketOf(entry.uuid) == payload.bucket()
+                    && !expected.containsKey(entry.uuid)) {
+                entry.stale = true;
+                CoordinatesDataManager.markChanged(entry);
+            }
+        }
+        List<UUID> missing = new ArrayList<>();
+        for (Map.Entry<UUID, Long> entry : expected.entrySet()) {
+            Coordinates local = CoordinatesDataManager.getEntry(entry.getKey());
+            if (local == null || local.sender == null || local.stale || local.version != entry.getValue()) {
+                missing.add(entry.getKey());
+            }
+        }
+        request(missing);
+    }
+
+    /**
+     * Asks the server for shared waypoints in full. Does nothing if the server does not support the sync.
+     *
+     * @param uuids The waypoints to request
+     */
+    static void request(List<UUID> uuids) {
+        if (HandshakeClientHandler.getServerVersion() < HandshakePayload.SYNC_VERSION
+                || !ClientPlayNetworking.canSend(WaypointRequestPayload.ID)) {
+            return;
+        }
+        for (int start = 0; start < uuids.size(); start += WaypointRequestPayload.MAX_UUIDS) {
+            ClientPlayNetworking.send(new WaypointRequestPayload(
+                    List.copyOf(uuids.subList(start, Math.min(start + WaypointRequestPayload.MAX_UUIDS, uuids.size())))));
+        }
+    }
+}
@@ -5,6 +5,7 @@ import net.fabricmc.api.Environment;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphicsExtractor;
 import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.components.Tooltip;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
 import org.slf4j.Logger;
@@ -12,9 +13,11 @@ import org.slf4j.LoggerFactory;
 
 import dev.ysknkd.mc.coordinates.CoordinatesApp;
 import dev.ysknkd.mc.coordinates.network.ShareCoordinatesClientHandler;
+import dev.ysknkd.mc.coordinates.network.ShareCoordinatesPatchPayload;
 import dev.ysknkd.mc.coordinates.store.CoordinatesDataManager;
 import dev.ysknkd.mc.coordinates.store.Coordinates;
 import dev.ysknkd.mc.coordinates.util.IconTexture;
+import dev.ysknkd.mc.coordinates.util.Util;
 import net.minecraft.client.renderer.RenderPipelines;
 
 import java.util.List;
@@ -42,6 +45,7 @@ public class CoordinatesListScreen extends Screen {
     private static final int ROW_HEIGHT = ICON_SIZE + 4;
     private static final int DESC_BUTTON_WIDTH = 70;
     private static final int CLOSE_BUTTON_WIDTH = 100;
+    private static final int SHARE_ALL_BUTTON_WIDTH = 100;
     private static final int CLOSE_BUTTON_HEIGHT = 20;
     private static final int PAGER_BUTTON_WIDTH = 20;
     private static final int PAGER_BUTTON_HEIGHT = 20;
@@ -61,14 +65,15 @@ public class CoordinatesListScreen extends Screen {
     protected void init() {
         calculateEntriesPerPage();
         
-        List<Coordinates> entries = new ArrayList<>(CoordinatesDataManager.getEntries());
-        int totalEntries = entries.size();
+        int totalEntries = CoordinatesDataManager.getEntryCount();
         int totalPages = (totalEntries + entriesPerPage - 1) / entriesPerPage;
 
         addSettingsButton();
+        addShareAllButton();
         addCloseButton();
         addPaginationButtons(totalPages);
-        addWidgets(entries, currentPage * entriesPerPage, Math.min((currentPage + 1) * entriesPerPage, totalEntries));
+        List<Coordinates> entries = CoordinatesDataManager.getEntries(currentPage * entriesPerPage, entriesPerPage);
+        addWidgets(entries, 0, entries.size());
     }
 
     /**
@@ -90,6 +95,30 @@ public class CoordinatesListScreen extends Screen {
         );
     }
 
+    /**
+     * Add a button that shares every entry in the current world at once. Entries received from other
+     * players are not shared again.
+     */
+    private void addShareAllButton() {
+        this.addRenderableWidget(
+            Button.builder(Component.translatable(CoordinatesApp.MOD_ID + ".button.share_all"), button -> {
+                String world = Util.getCurrentWorldName(Minecraft.getInstance());
+                List<Coordinates> shared = new ArrayList<>();
+                for (Coordinates entry : CoordinatesDataManager.getEntries()) {
+                    if (entry.sender == null && world.equals(entry.world)) {
+                        entry.share = true;
+                        CoordinatesDataManager.markChanged(entry);
+                        shared.add(entry);
+                    }
+                }
+                ShareCoordinatesClientHandler.sendAll(shared);
+                Minecraft.getInstance().gui.setScreen(new CoordinatesListScreen(currentPage));
+            })
+            .bounds(LEFT_MARGIN, 10, SHARE_ALL_BUTTON_WIDTH, ICON_SIZE)
+            .build()
+        );
+    }
+
     private void addCloseButton() {
         int x = this.width / 2 - (CLOSE_BUTTON_WIDTH / 2);
         int y = this.height - 30;
@@ -151,6 +180,7 @@ public class CoordinatesListScreen extends Screen {
             this.addRenderableWidget(
                 new ToggleIconButton(LEFT_MARGIN, rowY, ICON_SIZE, ICON_SIZE, Component.literal("☆"), button -> {
                     entry.favorite = !entry.favorite;
+                    CoordinatesDataManager.markChanged(entry);
                     Minecraft.getInstance().gui.setScreen(new CoordinatesListScreen(currentPage));
                 }, entry.favorite)
             );
@@ -159,10 +189,10 @@ public class CoordinatesListScreen extends Screen {
             int pinX = LEFT_MARGIN + ICON_SIZE + ICON_GAP;
             this.addRenderableWidget(
                 new ToggleIconButton(pinX, rowY, ICON_SIZE, ICON_SIZE, Component.literal("📌"), button -> {
-                    entry.pinned = !entry.pinned;
+                    CoordinatesDataManager.setPinned(entry, !entry.pinned);
                     if (entry.share) {
                         // If valid, treat as shared state and always share
-                        ShareCoordinatesClientHandler.send(entry);
+                        ShareCoordinatesClientHandler.sendPatch(entry, ShareCoordinatesPatchPayload.PINNED);
                     }
                     Minecraft.getInstance().gui.setScreen(new CoordinatesListScreen(currentPage));
                 }, entry.pinned)
@@ -170,16 +200,22 @@ public class CoordinatesListScreen extends Screen {
 
             // Share button to toggle
             int shareX = LEFT_MARGIN + (ICON_SIZE + ICON_GAP) * 2;
-            this.addRenderableWidget(
+            ToggleIconButton shareButton =
                 new ToggleIconButton(shareX, rowY, ICON_SIZE, ICON_SIZE, Component.literal("🔗"), button -> {
                     entry.share = !entry.share;
+                    CoordinatesDataManager.markChanged(entry);
                     if (entry.share) {
                         // If valid, treat as shared state and always share
                         ShareCoordinatesClientHandler.send(entry);
                     }
                     Minecraft.getInstance().gui.setScreen(new CoordinatesListScreen(currentPage));
-                }, entry.share)
-            );
+                }, entry.share);
+            if (entry.sender != null) {
+                // Only the player who shared a waypoint first may share it; the server ignores anyone else
+                shareButton.active = false;
+                shareButton.setTooltip(Tooltip.create(Component.translatable(CoordinatesApp.MOD_ID + ".tooltip.share_received")));
+            }
+            this.addRenderableWidget(shareButton);
 
             // "Edit Description" button
             int descX = this.width - ICON_SIZE - LEFT_MARGIN - DESC_BUTTON_WIDTH - ICON_GAP;
@@ -227,10 +263,9 @@ public class CoordinatesListScreen extends Screen {
      * Render text information for entries corresponding to current page.
      */
     private void renderEntriesText(GuiGraphicsExtractor context) {
-        List<Coordinates> entries = new ArrayList<>(CoordinatesDataManager.getEntries());
-        int totalEntries = entries.size();
-        int startIndex = currentPage * entriesPerPage;
-        int endIndex = Math.min(startIndex + entriesPerPage, totalEntries);
+        List<Coordinates> entries = CoordinatesDataManager.getEntries(currentPage * entriesPerPage, entriesPerPage);
+        int startIndex = 0;
+        int endIndex = entries.size();
         int x = LEFT_MARGIN + ICON_SIZE * 3 + ICON_GAP * 3;
         int iconX = x - 1; // -1 is adjust ...
         int iconSize = 8; // 8 x 8
@@ -254,8 +289,7 @@ public class CoordinatesListScreen extends Screen {
      */
     private void renderPaginationText(GuiGraphicsExtractor context) {
         int paginationAreaY = this.height - PAGINATION_AREA_OFFSET;
-        List<Coordinates> entries = new ArrayList<>(CoordinatesDataManager.getEntries());
-        int totalEntries = entries.size();
+        int totalEntries = CoordinatesDataManager.getEntryCount();
         int totalPages = (totalEntries + entriesPerPage - 1) / entriesPerPage;
         String pageInfo = (currentPage + 1) + " / " + totalPages;
         int textY = paginationAreaY + (PAGER_BUTTON_HEIGHT - this.font.lineHeight) / 2;
@@ -1,7 +1,10 @@
 package dev.ysknkd.mc.coordinates.screen;
 
 import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.network.ShareCoordinatesClientHandler;
+import dev.ysknkd.mc.coordinates.network.ShareCoordinatesPatchPayload;
 import dev.ysknkd.mc.coordinates.store.Coordinates;
+import dev.ysknkd.mc.coordinates.store.CoordinatesDataManager;
 
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -52,7 +55,14 @@ public class DescriptionEditScreen extends Screen {
         // "Save" button
         this.addRenderableWidget(
             Button.builder(Component.translatable(CoordinatesApp.MOD_ID + ".button.save"), button -> {
-                entry.description = textField.getValue();
+                String description = textField.getValue();
+                if (!description.equals(entry.description)) {
+                    entry.description = description;
+                    CoordinatesDataManager.markChanged(entry);
+                    if (entry.share) {
+                        ShareCoordinatesClientHandler.sendPatch(entry, ShareCoordinatesPatchPayload.DESCRIPTION);
+                    }
+                }
                 onClose();
             })
             .bounds(centerX - textFieldWidth / 2, centerY + textFieldHeight, textFieldWidth / 2 - 2, 20)
@@ -21,6 +21,13 @@ public class Coordinates {
     public String icon;
     public boolean share;
 
+    // Player who shared this entry, or null for entries created on this client
+    public UUID sender;
+    // Version of the shared content last applied by CoordinatesDataManager#addOrUpdateEntry
+    public long version;
+    // Whether the server no longer shares this entry; it keeps its sender until it is shared again
+    public boolean stale;
+
     /**
      * Constructor for new entries, automatically generating a new UUID.
      *
@@ -56,6 +63,28 @@ public class Coordinates {
         this.savedTime = System.currentTimeMillis();
     }
 
+    /**
+     * Copy constructor, for handing entries to another thread.
+     *
+     * @param other The entry to copy.
+     */
+    Coordinates(Coordinates other) {
+        this.uuid = other.uuid;
+        this.x = other.x;
+        this.y = other.y;
+        this.z = other.z;
+        this.description = other.description;
+        this.favorite = other.favorite;
+        this.pinned = other.pinned;
+        this.savedTime = other.savedTime;
+        this.world = other.world;
+        this.icon = other.icon;
+        this.share = other.share;
+        this.sender = other.sender;
+        this.version = other.version;
+        this.stale = other.stale;
+    }
+
     /**
      * Formats the coordinate data into a string for display.
      *
@@ -1,18 +1,12 @@
 package dev.ysknkd.mc.coordinates.store;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
 import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.network.WaypointDigest;
 
-import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,14 +14,14 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
-import java.util.function.Function;
 import java.util.LinkedHashMap;
 import java.util.Comparator;
 
 /**
  * Utility class for managing and persisting coordinate data.
- * データファイルのパス例: "config/" + CoordinatesApp.MOD_ID + "/{worldId}/data.json"
+ * データファイルのパス例: "config/" + CoordinatesApp.MOD_ID + "/{worldId}/data.json" (+ data.journal)
  */
 public final class CoordinatesDataManager {
 
@@ -39,8 +33,25 @@ public final class CoordinatesDataManager {
     // Map to manage entries keyed by UUID
     private static final Map<UUID, Coordinates> entries = new LinkedHashMap<>();
 
-    // Gson instance
-    private static final Gson gson = new Gson();
+    // Pinned entries by world, kept up to date on every change so the HUD does not filter each frame.
+    // Entries without a world are kept under the null key, so hasPinnedEntries still counts them.
+    private static final Map<String, List<Coordinates>> pinnedByWorld = new HashMap<>();
+    // Read-only views of the lists above, created once per world
+    private static final Map<String, List<Coordinates>> pinnedViews = new HashMap<>();
+    // World each pinned entry is indexed under, as entries are changed in place
+    private static final Map<UUID, String> pinnedWorlds = new HashMap<>();
+
+    // Entries oldest first, kept sorted so listing pages never sorts; savedTime never changes once set
+    private static final List<Coordinates> bySavedTime = new ArrayList<>();
+    private static final Comparator<Coordinates> SAVED_TIME_ORDER =
+            Comparator.comparingLong((Coordinates e) -> e.savedTime).thenComparing(e -> e.uuid);
+
+    // Changes since the last snapshot, appended as they are made
+    private static final CoordinatesJournal journal = new CoordinatesJournal();
+
+    // Entries by position, for range and nearest queries
+    private static final WaypointIndex spatialIndex = new WaypointIndex();
+
     private static final List<CoordinatesDataListener> listeners = new ArrayList<>();
 
     // Current worldId (updated during load)
@@ -56,57 +67,52 @@ public final class CoordinatesDataManager {
     // ----------------------------------------------------------------
 
     /**
-     * Gets the path to the data file based on the given worldId.
-     * Example: "config/" + CoordinatesApp.MOD_ID + "/{worldId}/data.json"
+     * Gets the directory of the data files based on the given worldId.
+     * Example: "config/" + CoordinatesApp.MOD_ID + "/{worldId}"
      *
      * @param worldId Target world ID
-     * @return Path to the data file
+     * @return Path to the data directory
      */
-    private static Path getDataFilePath(String worldId) {
-        return Paths.get("config", CoordinatesApp.MOD_ID, worldId, "data.json");
+    private static Path getDataDirectory(String worldId) {
+        return Paths.get("config", CoordinatesApp.MOD_ID, worldId);
     }
 
     /**
-     * Loads coordinate data from a persisted file and reflects it in the internal map.
-     * If the file does not exist, it does nothing.
+     * Loads coordinate data from the persisted snapshot and journal and reflects it in the internal map.
+     * Changes made from then on are journaled to the same world.
      *
      * @param worldId Target world ID to load
      */
     public static void load(String worldId) {
         currentWorldId = worldId;
-        Path dataFile = getDataFilePath(worldId);
-        if (!Files.exists(dataFile)) {
-            return;
-        }
-        try (Reader reader = Files.newBufferedReader(dataFile, StandardCharsets.UTF_8)) {
-            Type listType = new TypeToken<List<Coordinates>>() {}.getType();
-            List<Coordinates> loadedEntries = gson.fromJson(reader, listType);
-            if (loadedEntries != null) {
-                entries.clear();
-                entries.putAll(
-                    loadedEntries.stream()
-                    .collect(Collectors.toMap(entry -> entry.uuid, Function.identity()))
-                );
-            }
-        } catch (IOException e) {
-            LOGGER.error("CoordinatesDataManager#load error", e);
+        Map<UUID, Coordinates> loadedEntries = journal.open(getDataDirectory(worldId));
+        entries.clear();
+        entries.putAll(loadedEntries);
+        clearPinned();
+        spatialIndex.clear();
+        bySavedTime.clear();
+        bySavedTime.addAll(entries.values());
+        bySavedTime.sort(SAVED_TIME_ORDER);
+        for (Coordinates entry : entries.values()) {
+            reindexPinned(entry);
+            spatialIndex.update(entry);
         }
     }
 
     /**
-     * Saves the content of the internal map to a JSON file on disk.
-     * If the save destination directory does not exist, it creates it automatically.
+     * Writes the journaled changes to disk and stops journaling until the next {@link #load(String)}.
+     * Only the changes since the last flush are written, not every entry; forcing them to disk and a
+     * running compaction finish on the {@link dev.ysknkd.mc.coordinates.util.BackgroundWriter} thread.
      */
     public static void save() {
-        Path dataFile = getDataFilePath(currentWorldId);
-        try {
-            Files.createDirectories(dataFile.getParent());
-            try (Writer writer = Files.newBufferedWriter(dataFile, StandardCharsets.UTF_8)) {
-                gson.toJson(entries.values(), writer);
-            }
-        } catch (IOException e) {
-            LOGGER.error("CoordinatesDataManager#save error", e);
-        }
+        journal.close();
+    }
+
+    /**
+     * Writes the changes made since the last call to the journal file. Called once per client tick.
+     */
+    public static void flush() {
+        journal.flush(entries.values());
     }
 
     // ----------------------------------------------------------------
@@ -117,11 +123,13 @@ public final class CoordinatesDataManager {
      * Adds a new entry or updates an existing entry (same UUID).<br>
      * If an entry with the same UUID already exists, its fields are overwritten and updated,
      * or a new entry is registered if it does not exist.
+     * The entry's version is recomputed from its content, for the shared waypoint sync.
      *
      * @param newEntry Entry to add or update
      */
     public static void addOrUpdateEntry(Coordinates newEntry) {
-        entries.compute(newEntry.uuid, (key, existing) -> {
+        updateVersion(newEntry);
+        Coordinates stored = entries.compute(newEntry.uuid, (key, existing) -> {
             if (existing != null) {
                 existing.x = newEntry.x;
                 existing.y = newEntry.y;
@@ -130,11 +138,54 @@ public final class CoordinatesDataManager {
                 existing.world = newEntry.world;
                 existing.pinned = newEntry.pinned;
                 existing.icon = newEntry.icon;
+                existing.version = newEntry.version;
+                existing.stale = false;
+                if (newEntry.sender != null) {
+                    existing.sender = newEntry.sender;
+                }
                 return existing;
             }
+            insertBySavedTime(newEntry);
             notifyEntryAdded(newEntry);
             return newEntry;
         });
+        reindexPinned(stored);
+        spatialIndex.update(stored);
+        journal.put(stored);
+    }
+
+    /**
+     * Records a change made in place to an entry's fields, so that it is persisted.
+     * Pin changes go through {@link #setPinned(Coordinates, boolean)} instead.
+     *
+     * @param entry The changed entry
+     */
+    public static void markChanged(Coordinates entry) {
+        if (entries.get(entry.uuid) == entry) {
+            journal.put(entry);
+        }
+    }
+
+    /**
+     * Pins or unpins an entry.
+     *
+     * @param entry Target entry
+     * @param pinned Whether the entry is pinned
+     */
+    public static void setPinned(Coordinates entry, boolean pinned) {
+        entry.pinned = pinned;
+        reindexPinned(entry);
+        markChanged(entry);
+    }
+
+    /**
+     * Recomputes the version of an entry after its shared fields were changed in place.
+     *
+     * @param entry The changed entry
+     */
+    public static void updateVersion(Coordinates entry) {
+        entry.version = WaypointDigest.version(entry.x, entry.y, entry.z,
+                entry.description, entry.world, entry.pinned, entry.icon);
     }
 
     /**
@@ -143,7 +194,16 @@ public final class CoordinatesDataManager {
      * @param entry Entry to remove
      */
     public static void removeEntry(Coordinates entry) {
-        entries.remove(entry.uuid);
+        Coordinates removed = entries.remove(entry.uuid);
+        if (removed != null) {
+            int index = Collections.binarySearch(bySavedTime, removed, SAVED_TIME_ORDER);
+            if (index >= 0) {
+                bySavedTime.remove(index);
+            }
+            journal.remove(removed.uuid);
+        }
+        unindexPinned(entry.uuid);
+        spatialIndex.remove(entry.uuid);
     }
 
     /**
@@ -162,9 +222,40 @@ public final class CoordinatesDataManager {
      * @return List of Coordinates sorted by saved time descending
      */
     public static List<Coordinates> getEntries() {
-        return entries.values().stream()
-                .sorted(Comparator.comparingLong((Coordinates e) -> e.savedTime).reversed())
-                .collect(Collectors.toList());
+        return new ArrayList<>(bySavedTime.reversed());
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return Number of entries
+     */
+    public static int getEntryCount() {
+        return bySavedTime.size();
+    }
+
+    /**
+     * Returns a range of the entries sorted by their saved time in descending order, without sorting.
+     *
+     * @param from Index of the first entry, newest being 0
+     * @param count Maximum number of entries
+     * @return Entries from the given index, newest first
+     */
+    public static List<Coordinates> getEntries(int from, int count) {
+        int size = bySavedTime.size();
+        int start = Math.max(0, Math.min(from, size));
+        int end = Math.min(size, start + Math.max(0, count));
+        List<Coordinates> page = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            page.add(bySavedTime.get(size - 1 - i));
+        }
+        return page;
+    }
+
+    private static void insertBySavedTime(Coordinates entry) {
+        int index = Collections.binarySearch(bySavedTime, entry, SAVED_TIME_ORDER);
+        // New entries are normally the newest and land at the end
+        bySavedTime.add(index < 0 ? -index - 1 : index, entry);
     }
 
     /**
@@ -172,6 +263,50 @@ public final class CoordinatesDataManager {
      */
     public static void clear() {
         entries.clear();
+        bySavedTime.clear();
+        clearPinned();
+        spatialIndex.clear();
+    }
+
+    // Spatial queries
+
+    /**
+     * Returns the entries of a world within a distance of a point.
+     *
+     * @param world Target world name
+     * @param x Center X
+     * @param y Center Y
+     * @param z Center Z
+     * @param radius Distance in blocks
+     * @return Matching entries, in no particular order
+     */
+    public static List<Coordinates> getEntriesWithin(String world, double x, double y, double z, double radius) {
+        return spatialIndex.within(world, x, y, z, radius);
+    }
+
+    /**
+     * Returns the entries of a world inside a box, bounds included.
+     *
+     * @param world Target world name
+     * @return Matching entries, in no particular order
+     */
+    public static List<Coordinates> getEntriesInBox(String world, double minX, double minY, double minZ,
+                                                    double maxX, double maxY, double maxZ) {
+        return spatialIndex.inBox(world, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Returns the entries of a world closest to a point.
+     *
+     * @param world Target world name
+     * @param x Center X
+     * @param y Center Y
+     * @param z Center Z
+     * @param count Maximum number of entries
+     * @return Up to count entries, closest first
+     */
+    public static List<Coordinates> getNearestEntries(String world, double x, double y, double z, int count) {
+        return spatialIndex.nearest(world, x, y, z, count);
     }
 
     // Pinned entry related processing
@@ -182,7 +317,7 @@ public final class CoordinatesDataManager {
      * @return true if pinned entries exist, false if they do not
      */
     public static boolean hasPinnedEntries() {
-        return entries.values().stream().anyMatch(Coordinates::isPinned);
+        return !pinnedWorlds.isEmpty();
     }
 
     /**
@@ -205,23 +340,62 @@ public final class CoordinatesDataManager {
      * @return true if pinned entries exist, false if they do not
      */
     public static boolean hasPinnedEntriesByWorld(String world) {
-        return entries.values().stream()
-                .anyMatch(entry -> entry.isPinned() && entry.world.equals(world));
+        return pinnedByWorld.containsKey(world);
     }
 
     /**
-     * Returns pinned entries only in the specified world as an immutable list.
+     * Returns pinned entries only in the specified world as a read-only view.
+     * The view is reused between calls and reflects later changes, so it must not be kept while
+     * entries are changed.
      *
      * @param world Target world name (e.g., "overworld")
-     * @return Immutable list of pinned entries in the specified world
+     * @return Read-only view of pinned entries in the specified world
      */
     public static List<Coordinates> getPinnedEntriesByWorld(String world) {
-        return Collections.unmodifiableList(
-            entries.values().stream()
-                   .filter(Coordinates::isPinned)
-                   .filter(entry -> entry.world.equals(world))
-                   .collect(Collectors.toList())
-        );
+        List<Coordinates> view = pinnedViews.get(world);
+        return view != null ? view : Collections.emptyList();
+    }
+
+    /**
+     * Moves an entry to the pinned list of its current world, or out of the pinned lists if it is no
+     * longer pinned. Called after an entry's pinned flag or world was changed.
+     *
+     * @param entry The changed entry
+     */
+    public static void reindexPinned(Coordinates entry) {
+        boolean pinned = entry.isPinned();
+        String world = entry.world;
+        if (pinned && pinnedWorlds.containsKey(entry.uuid) && Objects.equals(world, pinnedWorlds.get(entry.uuid))) {
+            return;
+        }
+        unindexPinned(entry.uuid);
+        if (pinned) {
+            pinnedByWorld.computeIfAbsent(world, key -> {
+                List<Coordinates> list = new ArrayList<>();
+                pinnedViews.put(key, Collections.unmodifiableList(list));
+                return list;
+            }).add(entry);
+            pinnedWorlds.put(entry.uuid, world);
+        }
+    }
+
+    private static void unindexPinned(UUID uuid) {
+        if (!pinnedWorlds.containsKey(uuid)) {
+            return;
+        }
+        String world = pinnedWorlds.remove(uuid);
+        List<Coordinates> list = pinnedByWorld.get(world);
+        list.removeIf(entry -> entry.uuid.equals(uuid));
+        if (list.isEmpty()) {
+            pinnedByWorld.remove(world);
+            pinnedViews.remove(world);
+        }
+    }
+
+    private static void clearPinned() {
+        pinnedByWorld.clear();
+        pinnedViews.clear();
+        pinnedWorlds.clear();
     }
 
     // ----------------------------------------------------------------
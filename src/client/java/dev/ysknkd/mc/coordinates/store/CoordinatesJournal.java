@@ -0,0 +1,351 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.util.BackgroundWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Persistence of the coordinate entries of one world: a snapshot ({@code data.json}) and a journal
+ * ({@code data.journal}) of the changes made since, one JSON record per line.
+ * <p>
+ * Changes are appended to the journal and flushed once per client tick. Once the journal holds
+ * several times more records than there are entries, it is moved aside ({@code data.journal.old})
+ * and a new snapshot is written by the {@link BackgroundWriter}, after which the old journal is deleted.
+ * Flushed records are forced to disk in the background shortly after the last change.
+ * Loading reads the snapshot and replays the old journal, if any, and then the journal; a line cut
+ * short by a crash is dropped. Loading writes nothing but a line break ending such a line: journaling
+ * goes on in the same file, and the replayed records are folded into a snapshot by the background
+ * compaction, right away if a compaction was interrupted and otherwise once the journal grew too long.
+ * Replaying records already folded into the snapshot again is harmless.
+ * <p>
+ * Only accessed on the client thread, apart from the snapshot written in the background, which works
+ * on copies of the entries.
+ */
+final class CoordinatesJournal {
+
+    private static final Logger LOGGER = LogManager.getLogger(CoordinatesApp.MOD_ID);
+
+    private static final String SNAPSHOT_FILE_NAME = "data.json";
+    private static final String JOURNAL_FILE_NAME = "data.journal";
+    private static final String OLD_JOURNAL_FILE_NAME = "data.journal.old";
+
+    private static final String PUT = "put";
+    private static final String REMOVE = "remove";
+
+    // The journal is compacted once it holds this many records more than there are entries, and at least twice as many
+    private static final int COMPACTION_SLACK = 1024;
+    // Flushed records are forced to disk once no more were written for this long
+    private static final long SYNC_DELAY_MILLIS = 2000;
+
+    private static final Gson gson = new Gson();
+
+    /**
+     * One line of the journal.
+     */
+    private static final class Record {
+        String op;
+        UUID uuid;
+        Coordinates entry;
+
+        Record(String op, UUID uuid, Coordinates entry) {
+            this.op = op;
+            this.uuid = uuid;
+            this.entry = entry;
+        }
+    }
+
+    private Path snapshotFile;
+    private Path journalFile;
+    private Path oldJournalFile;
+    private Writer journal;
+    // Records in the journal file
+    private int records;
+    private boolean dirty;
+    private Future<?> compaction;
+
+    /**
+     * Reads the entries stored in a directory and starts journaling to it. Does not write the entries
+     * back; see the class comment.
+     *
+     * @param directory Directory of the world's data
+     * @return The stored entries, keyed by UUID in their stored order
+     */
+    Map<UUID, Coordinates> open(Path directory) {
+        close();
+        // A compaction still running could delete the old journal between reading the snapshot and replaying it
+        awaitCompaction();
+        snapshotFile = directory.resolve(SNAPSHOT_FILE_NAME);
+        journalFile = directory.resolve(JOURNAL_FILE_NAME);
+        oldJournalFile = directory.resolve(OLD_JOURNAL_FILE_NAME);
+
+        Map<UUID, Coordinates> entries = new LinkedHashMap<>();
+        readSnapshot(entries);
+        replay(oldJournalFile, entries);
+        int journaled = replay(journalFile, entries);
+        openJournal();
+        if (journal != null) {
+            records = journaled;
+            terminateLastLine();
+        }
+        if (Files.exists(oldJournalFile) || isTooLong(entries.size())) {
+            compact(entries.values());
+        }
+        return entries;
+    }
+
+    /**
+     * Records that an entry was added or changed.
+     */
+    void put(Coordinates entry) {
+        append(new Record(PUT, entry.uuid, entry));
+    }
+
+    /**
+     * Records that an entry was removed.
+     */
+    void remove(UUID uuid) {
+        append(new Record(REMOVE, uuid, null));
+    }
+
+    /**
+     * Flushes the records appended since the last call, and starts a compaction if the journal grew
+     * too long.
+     *
+     * @param entries The current entries
+     */
+    void flush(Collection<Coordinates> entries) {
+        if (!dirty || journal == null) {
+            return;
+        }
+        dirty = false;
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#flush error", e);
+            closeJournal();
+            return;
+        }
+        Path file = journalFile;
+        BackgroundWriter.debounce(file, SYNC_DELAY_MILLIS, () -> BackgroundWriter.sync(file));
+        if (isTooLong(entries.size())) {
+            compact(entries);
+        }
+    }
+
+    /**
+     * Flushes the journal and stops journaling. Forcing it to disk and a running compaction finish in
+     * the background.
+     */
+    void close() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#flush error", e);
+        }
+        closeJournal();
+        Path file = journalFile;
+        BackgroundWriter.debounce(file, 0, () -> BackgroundWriter.sync(file));
+    }
+
+    private boolean isTooLong(int entryCount) {
+        return records > COMPACTION_SLACK + entryCount && records > entryCount * 2;
+    }
+
+    /**
+     * Moves the journal aside and writes a snapshot of copies of the entries in the background.
+     * If an old journal is left from a compaction that did not finish, the journal stays in place and
+     * the snapshot only replaces the old journal.
+     */
+    private void compact(Collection<Coordinates> entries) {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        if (!Files.exists(oldJournalFile)) {
+            closeJournal();
+            try {
+                Files.move(journalFile, oldJournalFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOGGER.error("CoordinatesJournal#compact error", e);
+                openJournal();
+                return;
+            }
+            openJournal();
+        }
+
+        List<Coordinates> copies = new ArrayList<>(entries.size());
+        for (Coordinates entry : entries) {
+            copies.add(new Coordinates(entry));
+        }
+        Path snapshot = snapshotFile;
+        Path oldJournal = oldJournalFile;
+        compaction = BackgroundWriter.submit(() -> {
+            writeSnapshot(snapshot, copies);
+            Files.deleteIfExists(oldJournal);
+        });
+    }
+
+    private void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("CoordinatesJournal#compact error", e.getCause());
+        }
+        compaction = null;
+    }
+
+    private void append(Record record) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(gson.toJson(record));
+            journal.write('\n');
+            records++;
+            dirty = true;
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#append error", e);
+            closeJournal();
+        }
+    }
+
+    private void openJournal() {
+        try {
+            Files.createDirectories(journalFile.getParent());
+            journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            records = 0;
+        } catch (IOException e) {
+            // Keep working from memory; changes since the last snapshot are lost on restart
+            LOGGER.error("CoordinatesJournal#open error", e);
+            journal = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#close error", e);
+        }
+        journal = null;
+        dirty = false;
+    }
+
+    private void readSnapshot(Map<UUID, Coordinates> entries) {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+            Type listType = new TypeToken<List<Coordinates>>() {}.getType();
+            List<Coordinates> loadedEntries = gson.fromJson(reader, listType);
+            if (loadedEntries != null) {
+                for (Coordinates entry : loadedEntries) {
+                    entries.put(entry.uuid, entry);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            LOGGER.error("CoordinatesJournal#readSnapshot error", e);
+        }
+    }
+
+    /**
+     * Ends a line cut short by a crash, so the next record is not appended to it.
+     */
+    private void terminateLastLine() {
+        try (SeekableByteChannel channel = Files.newByteChannel(journalFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(size - 1);
+            if (channel.read(last) == 1 && last.get(0) != '\n') {
+                journal.write('\n');
+            }
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#open error", e);
+            closeJournal();
+        }
+    }
+
+    /**
+     * Applies the records of a journal file to the entries.
+     *
+     * @return The number of records read
+     */
+    private static int replay(Path file, Map<UUID, Coordinates> entries) {
+        int count = 0;
+        if (!Files.exists(file)) {
+            return count;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                count++;
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    LOGGER.warn("Dropping an incomplete record from {}", file);
+                    continue;
+                }
+                if (record == null || record.uuid == null) {
+                    continue;
+                }
+                if (PUT.equals(record.op) && record.entry != null) {
+                    entries.put(record.uuid, record.entry);
+                } else if (REMOVE.equals(record.op)) {
+                    entries.remove(record.uuid);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("CoordinatesJournal#replay error", e);
+        }
+        return count;
+    }
+
+    private static void writeSnapshot(Path file, Collection<Coordinates> entries) throws IOException {
+        BackgroundWriter.writeAtomically(file, gson.toJson(entries));
+    }
+}
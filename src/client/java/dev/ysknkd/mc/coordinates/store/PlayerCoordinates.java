@@ -2,6 +2,8 @@ package dev.ysknkd.mc.coordinates.store;
 
 import java.util.UUID;
 
+import dev.ysknkd.mc.coordinates.network.Quantization;
+
 public class PlayerCoordinates {
     public UUID uuid;
     public double x;
@@ -10,6 +12,11 @@ public class PlayerCoordinates {
     public String name;
     public String world;
 
+    // Fixed-point position last received from the server, used as the base for deltas
+    int qx;
+    int qy;
+    int qz;
+
     public PlayerCoordinates(UUID uuid, double x, double y, double z, String name, String world) {
         this.uuid = uuid;
         this.x = x;
@@ -17,5 +24,8 @@ public class PlayerCoordinates {
         this.z = z;
         this.name = name;
         this.world = world;
+        this.qx = Quantization.quantize(x);
+        this.qy = Quantization.quantize(y);
+        this.qz = Quantization.quantize(z);
     }
 }
@@ -6,6 +6,8 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import dev.ysknkd.mc.coordinates.network.Quantization;
+
 public class PlayerCoordinatesCache {
     private final static ConcurrentHashMap<UUID, PlayerCoordinates> coordinatesMap = new ConcurrentHashMap<>();
     
@@ -17,6 +19,9 @@ public class PlayerCoordinatesCache {
                 existing.x = entity.x;
                 existing.y = entity.y;
                 existing.z = entity.z;
+                existing.qx = entity.qx;
+                existing.qy = entity.qy;
+                existing.qz = entity.qz;
                 existing.world = entity.world;
                 existing.name = entity.name;
                 return existing;
@@ -25,6 +30,46 @@ public class PlayerCoordinatesCache {
         });
     }
 
+    /**
+     * Applies a movement delta to a known player, reconstructing the full position.
+     * Deltas for players without a previous keyframe are ignored; the next keyframe restores them.
+     *
+     * @param uuid The player's UUID
+     * @param dx Movement along X in fixed-point units
+     * @param dy Movement along Y in fixed-point units
+     * @param dz Movement along Z in fixed-point units
+     */
+    public static void applyDelta(UUID uuid, int dx, int dy, int dz) {
+        coordinatesMap.computeIfPresent(uuid, (key, existing) -> {
+            existing.qx += dx;
+            existing.qy += dy;
+            existing.qz += dz;
+            existing.x = Quantization.dequantize(existing.qx);
+            existing.y = Quantization.dequantize(existing.qy);
+            existing.z = Quantization.dequantize(existing.qz);
+            return existing;
+        });
+    }
+
+    /**
+     * @return The last known position of a player, or null if the player is not known
+     */
+    public static PlayerCoordinates get(UUID uuid) {
+        return coordinatesMap.get(uuid);
+    }
+
+    /**
+     * @return The known player with the given name, ignoring case, or null if there is none
+     */
+    public static PlayerCoordinates findByName(String name) {
+        for (PlayerCoordinates entry : coordinatesMap.values()) {
+            if (entry.name != null && entry.name.equalsIgnoreCase(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     public static void clear() {
         coordinatesMap.clear();
     }
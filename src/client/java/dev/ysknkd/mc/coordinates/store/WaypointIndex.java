@@ -0,0 +1,209 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Per-dimension uniform grid over the saved entries, keyed by horizontal cell.
+ * Entries are changed in place, so the grid remembers where each one was indexed and
+ * {@link #update(Coordinates)} has to be called after an entry moved.
+ * <p>
+ * Distances are measured in three dimensions; cells only split the horizontal plane, which is enough
+ * since waypoints rarely share a column.
+ */
+final class WaypointIndex {
+
+    // Cell width in blocks: 8 chunks
+    private static final int CELL_SHIFT = 7;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private record Location(String world, long cell) {
+    }
+
+    private final Map<String, Long2ObjectOpenHashMap<List<Coordinates>>> cells = new HashMap<>();
+    private final Map<UUID, Location> locations = new HashMap<>();
+
+    /**
+     * Indexes an entry, or moves it to the cell of its current position.
+     */
+    void update(Coordinates entry) {
+        Location location = entry.world != null ? new Location(entry.world, cellKey(cellOf(entry.x), cellOf(entry.z))) : null;
+        Location indexed = locations.get(entry.uuid);
+        if (location != null && location.equals(indexed)) {
+            return;
+        }
+        remove(entry.uuid);
+        if (location != null) {
+            cells.computeIfAbsent(location.world(), world -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(location.cell(), key -> new ArrayList<>())
+                .add(entry);
+            locations.put(entry.uuid, location);
+        }
+    }
+
+    void remove(UUID uuid) {
+        Location location = locations.remove(uuid);
+        if (location == null) {
+            return;
+        }
+        Long2ObjectOpenHashMap<List<Coordinates>> worldCells = cells.get(location.world());
+        List<Coordinates> cell = worldCells.get(location.cell());
+        cell.removeIf(entry -> entry.uuid.equals(uuid));
+        if (cell.isEmpty()) {
+            worldCells.remove(location.cell());
+            if (worldCells.isEmpty()) {
+                cells.remove(location.world());
+            }
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        locations.clear();
+    }
+
+    /**
+     * @return The entries of a world within a distance of a point, in no particular order
+     */
+    List<Coordinates> within(String world, double x, double y, double z, double radius) {
+        List<Coordinates> result = new ArrayList<>();
+        double radiusSq = radius * radius;
+        for (Coordinates entry : inBox(world, x - radius, y - radius, z - radius, x + radius, y + radius, z + radius)) {
+            if (distanceSq(entry, x, y, z) <= radiusSq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The entries of a world inside a box, bounds included, in no particular order
+     */
+    List<Coordinates> inBox(String world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        List<Coordinates> result = new ArrayList<>();
+        Long2ObjectOpenHashMap<List<Coordinates>> worldCells = cells.get(world);
+        if (worldCells == null) {
+            return result;
+        }
+        int minCx = cellOf(minX);
+        int maxCx = cellOf(maxX);
+        int minCz = cellOf(minZ);
+        int maxCz = cellOf(maxZ);
+        if ((long) (maxCx - minCx + 1) * (maxCz - minCz + 1) > worldCells.size()) {
+            // Box covers more cells than are occupied: walk the occupied ones instead
+            for (Long2ObjectMap.Entry<List<Coordinates>> cell : worldCells.long2ObjectEntrySet()) {
+                int cx = (int) (cell.getLongKey() >> 32);
+                int cz = (int) cell.getLongKey();
+                if (cx >= minCx && cx <= maxCx && cz >= minCz && cz <= maxCz) {
+                    collectInBox(cell.getValue(), minX, minY, minZ, maxX, maxY, maxZ, result);
+                }
+            }
+            return result;
+        }
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                List<Coordinates> cell = worldCells.get(cellKey(cx, cz));
+                if (cell != null) {
+                    collectInBox(cell, minX, minY, minZ, maxX, maxY, maxZ, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the entries of a world closest to a point, searching rings of cells outwards until no
+     * closer entry can remain.
+     *
+     * @return Up to {@code count} entries, closest first
+     */
+    List<Coordinates> nearest(String world, double x, double y, double z, int count) {
+        List<Coordinates> result = new ArrayList<>();
+        Long2ObjectOpenHashMap<List<Coordinates>> worldCells = cells.get(world);
+        if (worldCells == null || count <= 0) {
+            return result;
+        }
+        // Farthest candidate on top, so it is the one replaced
+        Comparator<Coordinates> byDistance = Comparator.comparingDouble(entry -> distanceSq(entry, x, y, z));
+        PriorityQueue<Coordinates> closest = new PriorityQueue<>(count + 1, byDistance.reversed());
+        int cx = cellOf(x);
+        int cz = cellOf(z);
+        for (int ring = 0; ; ring++) {
+            long side = 2L * ring + 1;
+            if (side * side > worldCells.size()) {
+                // Rings now cover more cells than are occupied: check the remaining occupied ones
+                for (Long2ObjectMap.Entry<List<Coordinates>> cell : worldCells.long2ObjectEntrySet()) {
+                    int ox = (int) (cell.getLongKey() >> 32) - cx;
+                    int oz = (int) cell.getLongKey() - cz;
+                    if (Math.max(Math.abs(ox), Math.abs(oz)) >= ring) {
+                        offer(closest, cell.getValue(), count, x, y, z);
+                    }
+                }
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dz = -ring; dz <= ring; dz++) {
+                    if (Math.abs(dx) != ring && Math.abs(dz) != ring) {
+                        continue;
+                    }
+                    List<Coordinates> cell = worldCells.get(cellKey(cx + dx, cz + dz));
+                    if (cell != null) {
+                        offer(closest, cell, count, x, y, z);
+                    }
+                }
+            }
+            // Every entry in the next ring is at least this far away horizontally
+            double reach = (double) ring * CELL_SIZE;
+            if (closest.size() == count && distanceSq(closest.peek(), x, y, z) <= reach * reach) {
+                break;
+            }
+        }
+        result.addAll(closest);
+        result.sort(byDistance);
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Coordinates> closest, List<Coordinates> cell, int count, double x, double y, double z) {
+        for (Coordinates entry : cell) {
+            if (closest.size() < count) {
+                closest.add(entry);
+            } else if (distanceSq(entry, x, y, z) < distanceSq(closest.peek(), x, y, z)) {
+                closest.poll();
+                closest.add(entry);
+            }
+        }
+    }
+
+    private static void collectInBox(List<Coordinates> cell, double minX, double minY, double minZ,
+                                     double maxX, double maxY, double maxZ, List<Coordinates> out) {
+        for (Coordinates entry : cell) {
+            if (entry.x >= minX && entry.x <= maxX && entry.y >= minY && entry.y <= maxY
+                    && entry.z >= minZ && entry.z <= maxZ) {
+                out.add(entry);
+            }
+        }
+    }
+
+    private static double distanceSq(Coordinates entry, double x, double y, double z) {
+        double dx = entry.x - x;
+        double dy = entry.y - y;
+        double dz = entry.z - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
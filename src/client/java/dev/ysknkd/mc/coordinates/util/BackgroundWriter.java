@@ -0,0 +1,164 @@
+package dev.ysknkd.mc.coordinates.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs file writes on one background thread, in the order they were submitted, so that saving does
+ * not block the client thread.
+ * Writes can be debounced under a key: scheduling a write again before it ran replaces it, so a burst
+ * of edits is written once, shortly after the last one.
+ */
+public final class BackgroundWriter {
+
+    private static final Logger LOGGER = LogManager.getLogger(CoordinatesApp.MOD_ID);
+
+    /**
+     * A write that may fail with an I/O error, which is logged.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    private static final class Debounced {
+        final Task task;
+        // Set right after scheduling, before the entry is published in the map
+        ScheduledFuture<?> future;
+
+        Debounced(Task task) {
+            this.task = task;
+        }
+    }
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, CoordinatesApp.MOD_ID + "-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<Object, Debounced> debounced = new ConcurrentHashMap<>();
+
+    private BackgroundWriter() {
+    }
+
+    /**
+     * Runs a write in the background as soon as the writes before it are done.
+     *
+     * @return A future completed once the write ran
+     */
+    public static Future<?> submit(Task task) {
+        return executor.submit(() -> run(task));
+    }
+
+    /**
+     * Runs a write in the background after a delay, replacing the write scheduled under the same key
+     * if it has not started yet.
+     *
+     * @return A future completed once the write ran, or cancelled if it was replaced
+     */
+    public static Future<?> debounce(Object key, long delayMillis, Task task) {
+        return debounced.compute(key, (k, previous) -> {
+            if (previous != null) {
+                previous.future.cancel(false);
+            }
+            Debounced self = new Debounced(task);
+            self.future = executor.schedule(() -> {
+                // Only forget this write, not one that replaced it meanwhile
+                debounced.remove(k, self);
+                run(task);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return self;
+        }).future;
+    }
+
+    /**
+     * @return Whether a debounced write is waiting to run under the key
+     */
+    static boolean isPending(Object key) {
+        return debounced.containsKey(key);
+    }
+
+    /**
+     * Runs the debounced writes now and waits for every write submitted so far, for at most the given
+     * time.
+     *
+     * @return false if the writes did not finish in time
+     */
+    public static boolean awaitPending(long timeoutMillis) {
+        for (Object key : debounced.keySet()) {
+            Debounced pending = debounced.remove(key);
+            if (pending != null && pending.future.cancel(false)) {
+                submit(pending.task);
+            }
+        }
+        try {
+            // The executor is single threaded, so this runs after everything submitted before it
+            executor.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Replaces a file with the given content: writes a temporary file next to it, forces it to disk and
+     * moves it over the target, so the target holds either the old or the new content after a crash.
+     */
+    public static void writeAtomically(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Forces what was written to a file to disk. Does nothing if the file no longer exists.
+     */
+    public static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Moved or deleted since; whoever did so is responsible for it
+        }
+    }
+
+    private static void run(Task task) {
+        try {
+            task.run();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("BackgroundWriter#run error", e);
+        }
+    }
+}
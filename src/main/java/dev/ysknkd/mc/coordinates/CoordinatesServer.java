@@ -2,17 +2,38 @@ package dev.ysknkd.mc.coordinates;
 
 import net.fabricmc.api.DedicatedServerModInitializer;
 
+import dev.ysknkd.mc.coordinates.command.CoordinatesCommands;
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import dev.ysknkd.mc.coordinates.network.ClientCapabilities;
+import dev.ysknkd.mc.coordinates.network.FollowHandler;
+import dev.ysknkd.mc.coordinates.network.HandshakeHandler;
 import dev.ysknkd.mc.coordinates.network.PlayerCoordinatesBroadcaster;
+import dev.ysknkd.mc.coordinates.network.PlayerJoinBroadcaster;
+import dev.ysknkd.mc.coordinates.network.ShareChannels;
 import dev.ysknkd.mc.coordinates.network.ShareCoordinatesHandler;
 import dev.ysknkd.mc.coordinates.network.PlayerLogoutBroadcaster;
+import dev.ysknkd.mc.coordinates.network.WaypointSyncHandler;
+import dev.ysknkd.mc.coordinates.store.SharedWaypointStore;
 
 public class CoordinatesServer implements DedicatedServerModInitializer {
 
     @Override
     public void onInitializeServer() {
+        ServerConfig.load();
+
+        // Before the other handlers so capabilities are known when their join and disconnect hooks run
+        ClientCapabilities.register();
+        ShareChannels.register();
+        HandshakeHandler.register();
         ShareCoordinatesHandler.register();
+        // After the share handler so shares relayed on a tick are flushed to disk on the same tick
+        SharedWaypointStore.register();
+        WaypointSyncHandler.register();
+        FollowHandler.register();
         PlayerCoordinatesBroadcaster.register();
+        PlayerJoinBroadcaster.register();
         PlayerLogoutBroadcaster.register();
+        CoordinatesCommands.register();
     }
 
 } 
\ No newline at end of file
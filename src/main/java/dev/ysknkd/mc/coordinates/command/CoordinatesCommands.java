@@ -0,0 +1,82 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import java.util.Locale;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.network.ShareChannels;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Server commands, all under {@code /ml}.
+ * <ul>
+ *     <li>{@code /ml channel join <name>}, {@code /ml channel leave <name>}: join or leave a named group</li>
+ *     <li>{@code /ml channel list}: show the channels the player is in</li>
+ * </ul>
+ */
+public class CoordinatesCommands {
+
+    // Longest accepted group name
+    private static final int MAX_GROUP_LENGTH = 32;
+
+    public static void register() {
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> register(dispatcher));
+    }
+
+    private static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("ml")
+            .then(Commands.literal("channel")
+                .then(Commands.literal("join")
+                    .then(Commands.argument("name", StringArgumentType.word())
+                        .executes(context -> joinGroup(context))))
+                .then(Commands.literal("leave")
+                    .then(Commands.argument("name", StringArgumentType.word())
+                        .executes(context -> leaveGroup(context))))
+                .then(Commands.literal("list")
+                    .executes(context -> listChannels(context)))));
+    }
+
+    private static int joinGroup(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+        ServerPlayer player = context.getSource().getPlayerOrException();
+        String group = groupName(context);
+        if (group.length() > MAX_GROUP_LENGTH) {
+            context.getSource().sendFailure(Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.too_long", MAX_GROUP_LENGTH));
+            return 0;
+        }
+        if (!ShareChannels.joinGroup(player, group)) {
+            context.getSource().sendFailure(Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.already_joined", group));
+            return 0;
+        }
+        context.getSource().sendSuccess(() -> Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.joined", group), false);
+        return 1;
+    }
+
+    private static int leaveGroup(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+        ServerPlayer player = context.getSource().getPlayerOrException();
+        String group = groupName(context);
+        if (!ShareChannels.leaveGroup(player, group)) {
+            context.getSource().sendFailure(Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.not_joined", group));
+            return 0;
+        }
+        context.getSource().sendSuccess(() -> Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.left", group), false);
+        return 1;
+    }
+
+    private static int listChannels(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+        ServerPlayer player = context.getSource().getPlayerOrException();
+        String channels = String.join(", ", ShareChannels.channelNames(player.getUUID()));
+        context.getSource().sendSuccess(() -> Component.translatable(CoordinatesApp.MOD_ID + ".command.channel.list", channels), false);
+        return 1;
+    }
+
+    private static String groupName(CommandContext<CommandSourceStack> context) {
+        return StringArgumentType.getString(context, "name").toLowerCase(Locale.ROOT);
+    }
+}
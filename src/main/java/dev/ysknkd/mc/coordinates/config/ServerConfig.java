@@ -0,0 +1,363 @@
+package dev.ysknkd.mc.coordinates.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Server-side configuration, stored in "config/mc-coordinates/server.json".
+ * Missing keys keep their default values; the file is written with defaults on first start.
+ */
+public class ServerConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    /**
+     * What happens to a player who sends shares faster than allowed.
+     */
+    public enum SharePolicy {
+        // The share is dropped
+        DROP,
+        // The player is disconnected
+        KICK,
+        // The share is relayed anyway and a warning is logged, to tune the limits before enforcing them
+        LOG
+    }
+
+    // Players within this distance (in blocks) are updated every nearUpdateTicks
+    private static final int DEFAULT_NEAR_RADIUS = 64;
+    private static int nearRadius = DEFAULT_NEAR_RADIUS;
+    private static final int DEFAULT_NEAR_UPDATE_TICKS = 2;
+    private static int nearUpdateTicks = DEFAULT_NEAR_UPDATE_TICKS;
+    // Players within this horizontal distance (in blocks) are updated every updateTicks
+    private static final int DEFAULT_INTEREST_RADIUS = 1024;
+    private static int interestRadius = DEFAULT_INTEREST_RADIUS;
+    private static final int DEFAULT_UPDATE_TICKS = 20;
+    private static int updateTicks = DEFAULT_UPDATE_TICKS;
+    // Players in the same dimension but beyond the interest radius are updated every farUpdateTicks
+    private static final int DEFAULT_FAR_UPDATE_TICKS = 200;
+    private static int farUpdateTicks = DEFAULT_FAR_UPDATE_TICKS;
+    // Players moving faster than this (in blocks per second) are updated one tier more often
+    private static final double DEFAULT_FAST_MOVER_SPEED = 10.0;
+    private static double fastMoverSpeed = DEFAULT_FAST_MOVER_SPEED;
+    // Maximum number of coordinate packets sent per tick; the rest are deferred to the next tick
+    private static final int DEFAULT_MAX_PACKETS_PER_TICK = 500;
+    private static int maxPacketsPerTick = DEFAULT_MAX_PACKETS_PER_TICK;
+    // Coordinate bytes that may be queued but not yet written to a single connection; above it updates are skipped
+    private static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024;
+    private static int maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+    // Shares of the same waypoint within this many ticks are relayed once, with the latest content
+    private static final int DEFAULT_SHARE_COALESCE_TICKS = 10;
+    private static int shareCoalesceTicks = DEFAULT_SHARE_COALESCE_TICKS;
+    // Sustained rate and burst of shares accepted from a single player
+    private static final double DEFAULT_SHARES_PER_SECOND = 2.0;
+    private static double sharesPerSecond = DEFAULT_SHARES_PER_SECOND;
+    private static final int DEFAULT_SHARE_BURST = 10;
+    private static int shareBurst = DEFAULT_SHARE_BURST;
+    private static final SharePolicy DEFAULT_SHARE_POLICY = SharePolicy.DROP;
+    private static SharePolicy sharePolicy = DEFAULT_SHARE_POLICY;
+    // Sustained rate and burst of shares accepted from a single player in batches, such as sharing every waypoint at once
+    private static final double DEFAULT_BULK_SHARES_PER_SECOND = 32.0;
+    private static double bulkSharesPerSecond = DEFAULT_BULK_SHARES_PER_SECOND;
+    private static final int DEFAULT_BULK_SHARE_BURST = 2048;
+    private static int bulkShareBurst = DEFAULT_BULK_SHARE_BURST;
+    // Players a single player may follow at once, how often followed players are updated (in ticks),
+    // and the horizontal distance (in blocks) beyond which a follow ends
+    private static final int DEFAULT_MAX_FOLLOW_TARGETS = 2;
+    private static int maxFollowTargets = DEFAULT_MAX_FOLLOW_TARGETS;
+    private static final int DEFAULT_FOLLOW_UPDATE_TICKS = 2;
+    private static int followUpdateTicks = DEFAULT_FOLLOW_UPDATE_TICKS;
+    private static final int DEFAULT_FOLLOW_RANGE = 2048;
+    private static int followRange = DEFAULT_FOLLOW_RANGE;
+    // Whether players in a scoreboard team only see their team mates (see ShareChannels)
+    private static final boolean DEFAULT_TEAM_CHANNELS = true;
+    private static boolean teamChannels = DEFAULT_TEAM_CHANNELS;
+    // Shared waypoints kept by the server for players who join later; the oldest are forgotten first
+    private static final int DEFAULT_MAX_SHARED_WAYPOINTS = 4096;
+    private static int maxSharedWaypoints = DEFAULT_MAX_SHARED_WAYPOINTS;
+    // How often the broadcast metrics are logged, in ticks; 0 disables logging
+    private static final int DEFAULT_METRICS_LOG_TICKS = 6000;
+    private static int metricsLogTicks = DEFAULT_METRICS_LOG_TICKS;
+
+    private static Path getConfigFilePath() {
+        return Paths.get("config", CoordinatesApp.MOD_ID, "server.json");
+    }
+
+    /**
+     * Loads the server configuration, creating the file with default values if it does not exist.
+     */
+    public static void load() {
+        Path configFile = getConfigFilePath();
+        if (!Files.exists(configFile)) {
+            save();
+            return;
+        }
+        Gson gson = new Gson();
+        try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+            JsonObject jsonObject = gson.fromJson(reader, JsonObject.class);
+            if (jsonObject != null) {
+                if (jsonObject.has("nearRadius")) {
+                    nearRadius = Math.max(0, jsonObject.get("nearRadius").getAsInt());
+                }
+                if (jsonObject.has("nearUpdateTicks")) {
+                    nearUpdateTicks = Math.max(1, jsonObject.get("nearUpdateTicks").getAsInt());
+                }
+                if (jsonObject.has("interestRadius")) {
+                    interestRadius = Math.max(16, jsonObject.get("interestRadius").getAsInt());
+                }
+                if (jsonObject.has("updateTicks")) {
+                    updateTicks = Math.max(1, jsonObject.get("updateTicks").getAsInt());
+                }
+                if (jsonObject.has("farUpdateTicks")) {
+                    farUpdateTicks = Math.max(1, jsonObject.get("farUpdateTicks").getAsInt());
+                }
+                if (jsonObject.has("fastMoverSpeed")) {
+                    fastMoverSpeed = jsonObject.get("fastMoverSpeed").getAsDouble();
+                }
+                if (jsonObject.has("maxPacketsPerTick")) {
+                    maxPacketsPerTick = Math.max(1, jsonObject.get("maxPacketsPerTick").getAsInt());
+                }
+                if (jsonObject.has("maxPendingBytes")) {
+                    maxPendingBytes = Math.max(1024, jsonObject.get("maxPendingBytes").getAsInt());
+                }
+                if (jsonObject.has("shareCoalesceTicks")) {
+                    shareCoalesceTicks = Math.max(0, jsonObject.get("shareCoalesceTicks").getAsInt());
+                }
+                if (jsonObject.has("sharesPerSecond")) {
+                    sharesPerSecond = Math.max(0.0, jsonObject.get("sharesPerSecond").getAsDouble());
+                }
+                if (jsonObject.has("shareBurst")) {
+                    shareBurst = Math.max(1, jsonObject.get("shareBurst").getAsInt());
+                }
+                if (jsonObject.has("sharePolicy")) {
+                    try {
+                        sharePolicy = SharePolicy.valueOf(jsonObject.get("sharePolicy").getAsString().toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.warn("Unknown sharePolicy, using {}", DEFAULT_SHARE_POLICY);
+                    }
+                }
+                if (jsonObject.has("bulkSharesPerSecond")) {
+                    bulkSharesPerSecond = Math.max(0.0, jsonObject.get("bulkSharesPerSecond").getAsDouble());
+                }
+                if (jsonObject.has("bulkShareBurst")) {
+                    bulkShareBurst = Math.max(1, jsonObject.get("bulkShareBurst").getAsInt());
+                }
+                if (jsonObject.has("maxFollowTargets")) {
+                    maxFollowTargets = Math.max(0, jsonObject.get("maxFollowTargets").getAsInt());
+                }
+                if (jsonObject.has("followUpdateTicks")) {
+                    followUpdateTicks = Math.max(1, jsonObject.get("followUpdateTicks").getAsInt());
+                }
+                if (jsonObject.has("followRange")) {
+                    followRange = Math.max(16, jsonObject.get("followRange").getAsInt());
+                }
+                if (jsonObject.has("teamChannels")) {
+                    teamChannels = jsonObject.get("teamChannels").getAsBoolean();
+                }
+                if (jsonObject.has("maxSharedWaypoints")) {
+                    maxSharedWaypoints = Math.max(0, jsonObject.get("maxSharedWaypoints").getAsInt());
+                }
+                if (jsonObject.has("metricsLogTicks")) {
+                    metricsLogTicks = Math.max(0, jsonObject.get("metricsLogTicks").getAsInt());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("ServerConfig#load error", e);
+        }
+        normalize();
+    }
+
+    /**
+     * Writes the current configuration to disk.
+     */
+    public static void save() {
+        Path configFile = getConfigFilePath();
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("nearRadius", nearRadius);
+        jsonObject.addProperty("nearUpdateTicks", nearUpdateTicks);
+        jsonObject.addProperty("interestRadius", interestRadius);
+        jsonObject.addProperty("updateTicks", updateTicks);
+        jsonObject.addProperty("farUpdateTicks", farUpdateTicks);
+        jsonObject.addProperty("fastMoverSpeed", fastMoverSpeed);
+        jsonObject.addProperty("maxPacketsPerTick", maxPacketsPerTick);
+        jsonObject.addProperty("maxPendingBytes", maxPendingBytes);
+        jsonObject.addProperty("shareCoalesceTicks", shareCoalesceTicks);
+        jsonObject.addProperty("sharesPerSecond", sharesPerSecond);
+        jsonObject.addProperty("shareBurst", shareBurst);
+        jsonObject.addProperty("sharePolicy", sharePolicy.name());
+        jsonObject.addProperty("bulkSharesPerSecond", bulkSharesPerSecond);
+        jsonObject.addProperty("bulkShareBurst", bulkShareBurst);
+        jsonObject.addProperty("maxFollowTargets", maxFollowTargets);
+        jsonObject.addProperty("followUpdateTicks", followUpdateTicks);
+        jsonObject.addProperty("followRange", followRange);
+        jsonObject.addProperty("teamChannels", teamChannels);
+        jsonObject.addProperty("maxSharedWaypoints", maxSharedWaypoints);
+        jsonObject.addProperty("metricsLogTicks", metricsLogTicks);
+
+        try {
+            Files.createDirectories(configFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
+                gson.toJson(jsonObject, writer);
+            }
+        } catch (IOException e) {
+            LOGGER.error("ServerConfig#save error", e);
+        }
+    }
+
+    /**
+     * Keeps the update tiers nested: each interval is rounded up to a multiple of the next finer one,
+     * so a tick that is due for a coarse tier is also due for every finer tier.
+     */
+    private static void normalize() {
+        nearRadius = Math.min(nearRadius, interestRadius);
+        updateTicks = roundUp(updateTicks, nearUpdateTicks);
+        farUpdateTicks = roundUp(farUpdateTicks, updateTicks);
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
+    }
+
+    /**
+     * @return The distance, in blocks, within which players are updated every {@link #getNearUpdateTicks()}
+     */
+    public static int getNearRadius() {
+        return nearRadius;
+    }
+
+    public static int getNearUpdateTicks() {
+        return nearUpdateTicks;
+    }
+
+    /**
+     * @return The horizontal radius, in blocks, within which players are updated every {@link #getUpdateTicks()}
+     */
+    public static int getInterestRadius() {
+        return interestRadius;
+    }
+
+    public static int getUpdateTicks() {
+        return updateTicks;
+    }
+
+    /**
+     * @return How many ticks apart players beyond the interest radius are updated
+     */
+    public static int getFarUpdateTicks() {
+        return farUpdateTicks;
+    }
+
+    /**
+     * @return The speed, in blocks per second, above which a player is updated one tier more often
+     */
+    public static double getFastMoverSpeed() {
+        return fastMoverSpeed;
+    }
+
+    /**
+     * @return The maximum number of coordinate packets sent in a single tick
+     */
+    public static int getMaxPacketsPerTick() {
+        return maxPacketsPerTick;
+    }
+
+    /**
+     * @return The high-water mark, in bytes, of coordinate data queued for a single connection
+     */
+    public static int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * @return How many ticks repeated shares of a waypoint are held back to be relayed once
+     */
+    public static int getShareCoalesceTicks() {
+        return shareCoalesceTicks;
+    }
+
+    /**
+     * @return The number of shares per second accepted from a single player once the burst is used up
+     */
+    public static double getSharesPerSecond() {
+        return sharesPerSecond;
+    }
+
+    /**
+     * @return The number of shares a player may send at once
+     */
+    public static int getShareBurst() {
+        return shareBurst;
+    }
+
+    public static SharePolicy getSharePolicy() {
+        return sharePolicy;
+    }
+
+    /**
+     * @return The number of batched shares per second accepted from a single player once the bulk burst is used up
+     */
+    public static double getBulkSharesPerSecond() {
+        return bulkSharesPerSecond;
+    }
+
+    /**
+     * @return The number of shares a player may send at once in batches
+     */
+    public static int getBulkShareBurst() {
+        return bulkShareBurst;
+    }
+
+    /**
+     * @return The number of players a single player may follow at once
+     */
+    public static int getMaxFollowTargets() {
+        return maxFollowTargets;
+    }
+
+    /**
+     * @return How many ticks apart followed players are sent to their followers
+     */
+    public static int getFollowUpdateTicks() {
+        return followUpdateTicks;
+    }
+
+    /**
+     * @return The horizontal distance, in blocks, beyond which a follow ends
+     */
+    public static int getFollowRange() {
+        return followRange;
+    }
+
+    /**
+     * @return Whether scoreboard teams are channels
+     */
+    public static boolean isTeamChannels() {
+        return teamChannels;
+    }
+
+    /**
+     * @return The number of shared waypoints the server keeps
+     */
+    public static int getMaxSharedWaypoints() {
+        return maxSharedWaypoints;
+    }
+
+    /**
+     * @return How many ticks apart the broadcast metrics are logged, or 0 if they are not logged
+     */
+    public static int getMetricsLogTicks() {
+        return metricsLogTicks;
+    }
+}
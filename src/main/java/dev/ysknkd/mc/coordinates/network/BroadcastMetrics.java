@@ -0,0 +1,79 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters of the coordinate broadcast, cumulative since the server started.
+ * Sizes are the estimates used for backpressure, not exact wire sizes.
+ */
+public final class BroadcastMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    private static final AtomicLong packetsSent = new AtomicLong();
+    private static final AtomicLong bytesSent = new AtomicLong();
+    // Scheduled updates skipped because the recipient's connection was congested
+    private static final AtomicLong updatesDropped = new AtomicLong();
+    // Shares rejected by the per-player rate limit
+    private static final AtomicLong sharesRejected = new AtomicLong();
+
+    private static long loggedPackets;
+    private static long loggedBytes;
+    private static long loggedDropped;
+    private static long loggedRejected;
+
+    private BroadcastMetrics() {
+    }
+
+    static void recordSent(int estimatedSize) {
+        packetsSent.incrementAndGet();
+        bytesSent.addAndGet(estimatedSize);
+    }
+
+    static void recordDropped() {
+        updatesDropped.incrementAndGet();
+    }
+
+    static void recordShareRejected() {
+        sharesRejected.incrementAndGet();
+    }
+
+    public static long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public static long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public static long getUpdatesDropped() {
+        return updatesDropped.get();
+    }
+
+    public static long getSharesRejected() {
+        return sharesRejected.get();
+    }
+
+    /**
+     * Logs the counters accumulated since the previous call. Called from the broadcast thread only.
+     */
+    static void log() {
+        long packets = packetsSent.get();
+        long bytes = bytesSent.get();
+        long dropped = updatesDropped.get();
+        long rejected = sharesRejected.get();
+        if (packets != loggedPackets || dropped != loggedDropped || rejected != loggedRejected) {
+            LOGGER.info("Coordinate broadcast: {} packets, ~{} bytes sent, {} updates dropped for congested connections, "
+                    + "{} shares rejected by the rate limit",
+                packets - loggedPackets, bytes - loggedBytes, dropped - loggedDropped, rejected - loggedRejected);
+        }
+        loggedPackets = packets;
+        loggedBytes = bytes;
+        loggedDropped = dropped;
+        loggedRejected = rejected;
+    }
+}
@@ -0,0 +1,134 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Spreads recipients evenly over the ticks of the broadcast cycle so that no single tick carries all of
+ * the coordinate traffic. Every recipient owns a slot in {@code [0, period)}, where the period is the
+ * coarsest update interval; a recipient is served on the ticks where {@code tick - slot} is due.
+ * <p>
+ * Slots are chosen so that the recipients are balanced over the one second cycle first, then over the
+ * whole period, starting the search at a hash of the recipient's UUID. When a recipient leaves, one
+ * recipient from the busiest tick of the one second cycle is moved to the quietest one if needed.
+ */
+final class BroadcastScheduler {
+
+    private final int cycle;
+    private final int period;
+    // Number of recipients per slot, and per slot modulo the one second cycle
+    private final int[] slotLoad;
+    private final int[] cycleLoad;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final Map<Integer, Set<UUID>> members = new HashMap<>();
+
+    /**
+     * @param cycle Ticks of the main update cycle, e.g. 20
+     * @param period Ticks of the coarsest update interval, a multiple of {@code cycle}
+     */
+    BroadcastScheduler(int cycle, int period) {
+        this.cycle = cycle;
+        this.period = period;
+        this.slotLoad = new int[period];
+        this.cycleLoad = new int[cycle];
+    }
+
+    /**
+     * Returns the slot of a recipient, assigning one on first use.
+     */
+    int slotOf(UUID uuid) {
+        Integer slot = slots.get(uuid);
+        if (slot == null) {
+            slot = chooseSlot(uuid);
+            assign(uuid, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Releases the slot of a recipient that left and rebalances the remaining ones.
+     */
+    void remove(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot == null) {
+            return;
+        }
+        release(uuid, slot);
+        rebalance();
+    }
+
+    private int chooseSlot(UUID uuid) {
+        int start = Math.floorMod(uuid.hashCode(), period);
+        int best = start;
+        for (int i = 1; i < period; i++) {
+            int slot = (start + i) % period;
+            if (isLessLoaded(slot, best)) {
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    private boolean isLessLoaded(int slot, int other) {
+        int byCycle = Integer.compare(cycleLoad[slot % cycle], cycleLoad[other % cycle]);
+        if (byCycle != 0) {
+            return byCycle < 0;
+        }
+        return slotLoad[slot] < slotLoad[other];
+    }
+
+    private void rebalance() {
+        int busiest = 0;
+        int quietest = 0;
+        for (int i = 1; i < cycle; i++) {
+            if (cycleLoad[i] > cycleLoad[busiest]) {
+                busiest = i;
+            }
+            if (cycleLoad[i] < cycleLoad[quietest]) {
+                quietest = i;
+            }
+        }
+        if (cycleLoad[busiest] - cycleLoad[quietest] <= 1) {
+            return;
+        }
+
+        // Move one recipient from the busiest slot of that tick to the quietest slot of the other tick
+        int from = busiest;
+        for (int slot = busiest; slot < period; slot += cycle) {
+            if (slotLoad[slot] > slotLoad[from]) {
+                from = slot;
+            }
+        }
+        int to = quietest;
+        for (int slot = quietest; slot < period; slot += cycle) {
+            if (slotLoad[slot] < slotLoad[to]) {
+                to = slot;
+            }
+        }
+        UUID moved = members.get(from).iterator().next();
+        release(moved, from);
+        assign(moved, to);
+    }
+
+    private void assign(UUID uuid, int slot) {
+        slots.put(uuid, slot);
+        members.computeIfAbsent(slot, key -> new LinkedHashSet<>()).add(uuid);
+        slotLoad[slot]++;
+        cycleLoad[slot % cycle]++;
+    }
+
+    private void release(UUID uuid, int slot) {
+        Set<UUID> set = members.get(slot);
+        if (set != null) {
+            set.remove(uuid);
+            if (set.isEmpty()) {
+                members.remove(slot);
+            }
+        }
+        slotLoad[slot]--;
+        cycleLoad[slot % cycle]--;
+    }
+}
@@ -0,0 +1,137 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+
+/**
+ * Per-tick view of every online player, derived on the broadcast worker from {@link CapturedPlayers}
+ * and shared by all recipients of that tick.
+ * Keyframe records are built and encoded lazily, at most once per player per tick.
+ */
+final class BroadcastSnapshot {
+
+    final int tick;
+    final ServerPlayer[] connections;
+    final boolean[] compact;
+    // ClientCapabilities slot and ShareChannels audience of each player
+    final int[] slots;
+    final BitSet[] audiences;
+    // Players each player follows (see FollowHandler)
+    final UUID[][] following;
+    final List<PlayerCoordinatesPayload> players;
+    // Session ids of the players (see PlayerIds)
+    final int[] ids;
+    // Fixed-point positions (see Quantization)
+    final int[] x;
+    final int[] y;
+    final int[] z;
+    // Whether each player currently moves faster than the configured fast mover speed
+    final boolean[] fast;
+    final PlayerGrid grid;
+    // Fast moving players of each dimension
+    private final Map<String, IntArrayList> fastByWorld = new HashMap<>();
+
+    private final Object2IntOpenHashMap<UUID> indices;
+    private final DimensionTable dimensions;
+    private final PlayerRecordBuffer recordBuffer;
+    private final PlayerKeyframe[] keyframes;
+    private final ByteBuf[] records;
+
+    BroadcastSnapshot(CapturedPlayers captured, int[] ids, boolean[] fast, int cellSize, DimensionTable dimensions,
+                      Function<ResourceKey<Level>, String> worldNames) {
+        int count = captured.size();
+        this.tick = captured.tick();
+        this.connections = captured.connections();
+        this.compact = captured.compact();
+        this.slots = captured.slots();
+        this.audiences = captured.audiences();
+        this.following = captured.following();
+        this.ids = ids;
+        this.fast = fast;
+        List<PlayerCoordinatesPayload> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(new PlayerCoordinatesPayload(captured.uuids()[i], captured.x()[i], captured.y()[i], captured.z()[i],
+                captured.names()[i], worldNames.apply(captured.dimensions()[i])));
+        }
+        this.players = players;
+        this.x = new int[count];
+        this.y = new int[count];
+        this.z = new int[count];
+        this.indices = new Object2IntOpenHashMap<>(count);
+        this.indices.defaultReturnValue(-1);
+        for (int i = 0; i < count; i++) {
+            PlayerCoordinatesPayload player = players.get(i);
+            x[i] = Quantization.quantize(player.x());
+            y[i] = Quantization.quantize(player.y());
+            z[i] = Quantization.quantize(player.z());
+            indices.put(player.uuid(), i);
+            if (fast[i]) {
+                fastByWorld.computeIfAbsent(player.world(), world -> new IntArrayList()).add(i);
+            }
+        }
+        this.grid = new PlayerGrid(players, cellSize);
+        this.dimensions = dimensions;
+        this.recordBuffer = new PlayerRecordBuffer(captured.registryAccess());
+        this.keyframes = new PlayerKeyframe[count];
+        this.records = new ByteBuf[count];
+    }
+
+    int size() {
+        return players.size();
+    }
+
+    /**
+     * @param uuid Player UUID
+     * @return The player's index in this snapshot, or -1 if the player is offline
+     */
+    int indexOf(UUID uuid) {
+        return indices.getInt(uuid);
+    }
+
+    /**
+     * @return Whether recipient r may see player i, that is whether they have a channel in common
+     */
+    boolean sees(int r, int i) {
+        return slots[i] >= 0 && audiences[r].get(slots[i]);
+    }
+
+    /**
+     * @param world Dimension identifier
+     * @return Indices of the fast moving players in the dimension
+     */
+    IntList fastInDimension(String world) {
+        IntArrayList list = fastByWorld.get(world);
+        return list != null ? list : IntLists.emptyList();
+    }
+
+    PlayerKeyframe keyframe(int index) {
+        if (keyframes[index] == null) {
+            PlayerCoordinatesPayload player = players.get(index);
+            int dimension = dimensions.indexOf(player.world());
+            keyframes[index] = new PlayerKeyframe(ids[index], x[index], y[index], z[index], dimension,
+                dimension == DimensionTable.UNKNOWN ? player.world() : null);
+        }
+        return keyframes[index];
+    }
+
+    ByteBuf record(int index) {
+        if (records[index] == null) {
+            records[index] = recordBuffer.encode(keyframe(index));
+        }
+        return records[index];
+    }
+}
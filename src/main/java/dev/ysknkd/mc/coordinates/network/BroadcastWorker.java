@@ -0,0 +1,499 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+
+/**
+ * Broadcast state and packet building, confined to the broadcast thread.
+ * For compact clients every (recipient, player) pair is updated at a rate picked from their distance:
+ * within the near radius every few ticks, within the interest radius about once a second, and
+ * beyond it only occasionally. Fast moving players are promoted one tier. Players in other
+ * dimensions are not sent. Legacy clients receive everyone once a second.
+ * <p>
+ * Recipients only receive the players they share a channel with (see {@link ShareChannels}). Players a
+ * recipient follows (see {@link FollowHandler}) are sent every few ticks regardless of their tier.
+ * <p>
+ * Recipients are spread over the ticks of the cycle by {@link BroadcastScheduler}, so the work per
+ * tick stays flat instead of peaking once a second. Recipients whose {@link ConnectionBacklog} is above
+ * the high-water mark are skipped until it drains.
+ */
+final class BroadcastWorker {
+
+    // Update tiers, from the most to the least frequent. The level of a tick is the coarsest tier due on it.
+    private static final int LEVEL_NONE = 0;
+    private static final int LEVEL_NEAR = 1;
+    private static final int LEVEL_MID = 2;
+    private static final int LEVEL_FAR = 3;
+
+    // Every Nth far tick each recipient receives full keyframes for the players it is sent
+    private static final int KEYFRAME_FAR_CYCLES = 3;
+    // Legacy clients keep the original one second cadence
+    private static final int LEGACY_UPDATE_TICKS = 20;
+    // Moves larger than this (in fixed-point units, 256 blocks) are sent as keyframes
+    private static final int MAX_DELTA = 256 * Quantization.SCALE;
+    // Weight of the latest sample in the smoothed speed of a player
+    private static final double SPEED_SMOOTHING = 0.3;
+    // Estimated size of a legacy payload without its strings
+    private static final int LEGACY_PAYLOAD_SIZE = 64;
+    private static final int LOGOUT_PAYLOAD_SIZE = 16;
+
+    private final Map<UUID, RecipientState> recipients = new HashMap<>();
+    private final Map<UUID, Motion> motions = new HashMap<>();
+    // Recipients whose update did not fit in a previous tick's packet budget, served first
+    private final Set<UUID> deferred = new LinkedHashSet<>();
+    // Recipients that just joined and get everything they may see on the next snapshot
+    private final Set<UUID> joined = new LinkedHashSet<>();
+    private final IntArrayList candidates = new IntArrayList();
+    // Players the current recipient follows and that are due on this tick
+    private final IntArrayList followed = new IntArrayList();
+    private final BroadcastScheduler scheduler =
+        new BroadcastScheduler(ServerConfig.getUpdateTicks(), ServerConfig.getFarUpdateTicks());
+    private final Map<ResourceKey<Level>, String> worldNames = new HashMap<>();
+    private final PlayerIds ids = new PlayerIds();
+    // Tick of the previously processed snapshot
+    private int lastTick = Integer.MIN_VALUE;
+    private int lastMetricsTick;
+
+    /**
+     * Last sampled position and smoothed speed of a player.
+     */
+    private static final class Motion {
+        double x;
+        double y;
+        double z;
+        int tick;
+        double speed;
+    }
+
+    /**
+     * Returns the coarsest update tier due on a tick, relative to the recipient's slot.
+     */
+    private static int levelAt(int tick) {
+        if (Math.floorMod(tick, ServerConfig.getFarUpdateTicks()) == 0) {
+            return LEVEL_FAR;
+        } else if (Math.floorMod(tick, ServerConfig.getUpdateTicks()) == 0) {
+            return LEVEL_MID;
+        } else if (Math.floorMod(tick, ServerConfig.getNearUpdateTicks()) == 0) {
+            return LEVEL_NEAR;
+        }
+        return LEVEL_NONE;
+    }
+
+    /**
+     * Processes a captured tick. Ticks skipped because the worker fell behind are folded into this one.
+     */
+    void process(CapturedPlayers captured) {
+        int tick = captured.tick();
+        BroadcastSnapshot snapshot = snapshot(captured);
+        // Ticks since the previous snapshot, bounded by the longest cycle
+        int from = lastTick == Integer.MIN_VALUE
+            ? tick - 1
+            : Math.max(lastTick, tick - ServerConfig.getFarUpdateTicks() * KEYFRAME_FAR_CYCLES);
+        lastTick = tick;
+        int metricsLogTicks = ServerConfig.getMetricsLogTicks();
+        if (metricsLogTicks > 0 && tick - lastMetricsTick >= metricsLogTicks) {
+            lastMetricsTick = tick;
+            BroadcastMetrics.log();
+        }
+
+        int count = snapshot.size();
+        recipients.keySet().removeIf(uuid -> snapshot.indexOf(uuid) < 0);
+        deferred.removeIf(uuid -> snapshot.indexOf(uuid) < 0);
+        // Players that joined after this capture was taken are kept for the next one
+        joined.removeIf(uuid -> {
+            int r = snapshot.indexOf(uuid);
+            if (r < 0) {
+                return false;
+            }
+            if (snapshot.compact[r]) {
+                // Served ahead of everyone else, within the packet budget
+                RecipientState state = recipients.computeIfAbsent(uuid, key -> new RecipientState());
+                state.pendingLevel = LEVEL_FAR;
+                state.pendingKeyframe = true;
+                deferred.add(uuid);
+            } else {
+                sendLegacy(snapshot, r);
+            }
+            return true;
+        });
+
+        int budget = ServerConfig.getMaxPacketsPerTick();
+        int sent = 0;
+        boolean[] handled = new boolean[count];
+        List<UUID> carriedOver = new ArrayList<>(deferred);
+        deferred.clear();
+
+        // Recipients deferred by an earlier tick go first, then everybody whose slot is due
+        for (UUID uuid : carriedOver) {
+            int r = snapshot.indexOf(uuid);
+            handled[r] = true;
+            if (serve(snapshot, r, from, tick, sent < budget)) {
+                sent++;
+            }
+        }
+        for (int r = 0; r < count; r++) {
+            if (handled[r]) {
+                continue;
+            }
+            if (!snapshot.compact[r]) {
+                int slot = scheduler.slotOf(snapshot.players.get(r).uuid());
+                if (isDue(from, tick, slot, LEGACY_UPDATE_TICKS)) {
+                    sendLegacy(snapshot, r);
+                }
+                continue;
+            }
+            if (serve(snapshot, r, from, tick, sent < budget)) {
+                sent++;
+            }
+        }
+    }
+
+    /**
+     * Sends a player that just joined every player it may see with the next snapshot, instead of
+     * waiting for its slot to come up.
+     */
+    void join(UUID uuid) {
+        joined.add(uuid);
+    }
+
+    /**
+     * Forgets a disconnected player's slot and releases its id. Clients retire the id themselves when
+     * they receive the logout, so every recipient has to be told again before the id is reused.
+     */
+    void remove(UUID uuid) {
+        scheduler.remove(uuid);
+        joined.remove(uuid);
+        recipients.remove(uuid);
+        int id = ids.release(uuid);
+        for (RecipientState state : recipients.values()) {
+            state.baselines.remove(uuid);
+            if (id != PlayerIds.NONE) {
+                state.announced.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Tells the given recipients that a player logged out. Runs on the worker after {@link #remove}, so
+     * no batch built before it can announce the player again once the logout arrived.
+     */
+    void logout(UUID uuid, List<ServerPlayer> targets) {
+        PlayerLogoutPayload payload = new PlayerLogoutPayload(uuid);
+        for (ServerPlayer target : targets) {
+            RecipientState state = recipients.get(target.getUUID());
+            if (state != null) {
+                state.backlog.send(target, payload, LOGOUT_PAYLOAD_SIZE);
+            } else {
+                ServerPlayNetworking.send(target, payload);
+            }
+        }
+    }
+
+    /**
+     * Builds the shared snapshot of a captured tick and updates the players' smoothed speed.
+     */
+    private BroadcastSnapshot snapshot(CapturedPlayers captured) {
+        int tick = captured.tick();
+        int count = captured.size();
+        double fastSpeed = ServerConfig.getFastMoverSpeed();
+
+        int[] playerIds = new int[count];
+        boolean[] fast = new boolean[count];
+        Map<UUID, Motion> sampled = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            UUID uuid = captured.uuids()[i];
+            double x = captured.x()[i];
+            double y = captured.y()[i];
+            double z = captured.z()[i];
+            playerIds[i] = ids.idOf(uuid);
+
+            Motion motion = motions.get(uuid);
+            if (motion == null) {
+                motion = new Motion();
+            } else if (tick > motion.tick) {
+                double dx = x - motion.x;
+                double dy = y - motion.y;
+                double dz = z - motion.z;
+                double speed = Math.sqrt(dx * dx + dy * dy + dz * dz) * 20.0 / (tick - motion.tick);
+                motion.speed += (speed - motion.speed) * SPEED_SMOOTHING;
+            }
+            motion.x = x;
+            motion.y = y;
+            motion.z = z;
+            motion.tick = tick;
+            fast[i] = motion.speed > fastSpeed;
+            sampled.put(uuid, motion);
+        }
+        motions.clear();
+        motions.putAll(sampled);
+
+        return new BroadcastSnapshot(captured, playerIds, fast, ServerConfig.getInterestRadius(), HandshakeHandler.getDimensions(),
+            key -> worldNames.computeIfAbsent(key, dimension -> dimension.identifier().toString()));
+    }
+
+    /**
+     * Returns whether a cycle of the given period, shifted by the slot, has a tick in (from, to].
+     */
+    private static boolean isDue(int from, int to, int slot, int period) {
+        for (int tick = to; tick > from; tick--) {
+            if (Math.floorMod(tick - slot, period) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendLegacy(BroadcastSnapshot snapshot, int r) {
+        ServerPlayer recipient = snapshot.connections[r];
+        RecipientState state = recipients.computeIfAbsent(snapshot.players.get(r).uuid(), key -> new RecipientState());
+        if (state.backlog.isCongested(ServerConfig.getMaxPendingBytes())) {
+            // Skipped entirely; the next round carries the latest positions
+            BroadcastMetrics.recordDropped();
+            return;
+        }
+        // Older clients only understand the per-player payload
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i != r && snapshot.sees(r, i)) {
+                PlayerCoordinatesPayload payload = snapshot.players.get(i);
+                state.backlog.send(recipient, payload, LEGACY_PAYLOAD_SIZE + payload.name().length() + payload.world().length());
+            }
+        }
+    }
+
+    /**
+     * Sends one compact recipient the players that are due on the ticks in (from, tick].
+     *
+     * @param withinBudget Whether a packet may still be sent on this tick; if not, the update is deferred
+     * @return true if a packet was sent
+     */
+    private boolean serve(BroadcastSnapshot snapshot, int r, int from, int tick, boolean withinBudget) {
+        UUID uuid = snapshot.players.get(r).uuid();
+        ServerPlayer recipient = snapshot.connections[r];
+        RecipientState state = recipients.computeIfAbsent(uuid, key -> new RecipientState());
+
+        // Each recipient runs its own cycle, shifted by its slot
+        int slot = scheduler.slotOf(uuid);
+        int level = LEVEL_NONE;
+        boolean keyframeTick = false;
+        for (int t = tick; t > from; t--) {
+            int localTick = t - slot;
+            int due = levelAt(localTick);
+            level = Math.max(level, due);
+            keyframeTick |= due == LEVEL_FAR
+                && Math.floorMod(localTick, ServerConfig.getFarUpdateTicks() * KEYFRAME_FAR_CYCLES) == 0;
+        }
+        int effectiveLevel = Math.max(level, state.pendingLevel);
+        boolean keyframe = keyframeTick || state.pendingKeyframe;
+        // Followed players run on a cycle of their own, on top of the tiers
+        boolean followDue = snapshot.following[r].length > 0
+            && isDue(from, tick, slot, ServerConfig.getFollowUpdateTicks());
+        if (effectiveLevel == LEVEL_NONE && !followDue) {
+            return false;
+        }
+        if (state.backlog.isCongested(ServerConfig.getMaxPendingBytes())) {
+            // Nothing is queued behind the backlog: the baselines stay as they are, so once the connection
+            // drains the next batch carries the latest positions instead of every missed update
+            if (level != LEVEL_NONE) {
+                BroadcastMetrics.recordDropped();
+            }
+            state.pendingLevel = effectiveLevel;
+            state.pendingKeyframe = keyframe;
+            deferred.add(uuid);
+            return false;
+        }
+        if (!withinBudget) {
+            state.pendingLevel = effectiveLevel;
+            state.pendingKeyframe = keyframe;
+            deferred.add(uuid);
+            return false;
+        }
+        state.pendingLevel = LEVEL_NONE;
+        state.pendingKeyframe = false;
+
+        PlayerCoordinatesBatchPayload batch = build(snapshot, r, state, effectiveLevel, keyframe, followDue);
+        if (batch == null) {
+            return false;
+        }
+        state.backlog.send(recipient, batch, batch.estimatedSize());
+        return true;
+    }
+
+    /**
+     * Builds the batch for one recipient, updating the recipient's baselines.
+     *
+     * @return The batch, or null if nothing changed for the recipient
+     */
+    private PlayerCoordinatesBatchPayload build(BroadcastSnapshot snapshot, int r, RecipientState state, int level, boolean keyframe,
+                                                boolean followDue) {
+        PlayerCoordinatesPayload self = snapshot.players.get(r);
+        int interestRadius = ServerConfig.getInterestRadius();
+
+        candidates.clear();
+        if (level >= LEVEL_FAR) {
+            candidates.addAll(snapshot.grid.inDimension(self.world()));
+        } else if (level >= LEVEL_NEAR) {
+            snapshot.grid.collectNear(self.world(), self.x(), self.z(), interestRadius, candidates);
+            if (level >= LEVEL_MID) {
+                // Fast movers beyond the interest radius are promoted to this tier
+                double radiusSq = (double) interestRadius * interestRadius;
+                IntList fastMovers = snapshot.fastInDimension(self.world());
+                for (int f = 0; f < fastMovers.size(); f++) {
+                    int i = fastMovers.getInt(f);
+                    if (horizontalDistanceSq(snapshot, r, i) > radiusSq) {
+                        candidates.add(i);
+                    }
+                }
+            }
+        }
+        followed.clear();
+        if (followDue) {
+            for (UUID uuid : snapshot.following[r]) {
+                int i = snapshot.indexOf(uuid);
+                if (i >= 0) {
+                    followed.add(i);
+                    if (!candidates.contains(i)) {
+                        candidates.add(i);
+                    }
+                }
+            }
+        }
+        if (level >= LEVEL_MID) {
+            // Forget players that went offline, and send players that left the recipient's dimension
+            // once more so the client sees them go
+            state.baselines.entrySet().removeIf(entry -> snapshot.indexOf(entry.getKey()) < 0);
+            hideUnseen(snapshot, r, state);
+            for (Map.Entry<UUID, RecipientState.Baseline> entry : state.baselines.entrySet()) {
+                int i = snapshot.indexOf(entry.getKey());
+                String world = snapshot.players.get(i).world();
+                if (!world.equals(self.world()) && !world.equals(entry.getValue().world)) {
+                    candidates.add(i);
+                }
+            }
+        }
+
+        List<PlayerDictionaryEntry> entries = new ArrayList<>();
+        List<PlayerKeyframe> keyframes = new ArrayList<>();
+        List<ByteBuf> keyframeRecords = new ArrayList<>();
+        List<PlayerCoordinatesDelta> deltas = new ArrayList<>();
+        for (int c = 0; c < candidates.size(); c++) {
+            int i = candidates.getInt(c);
+            if (i == r || !snapshot.sees(r, i) || (tierOf(snapshot, r, i) > level && !followed.contains(i))) {
+                continue;
+            }
+            PlayerCoordinatesPayload payload = snapshot.players.get(i);
+            int x = snapshot.x[i];
+            int y = snapshot.y[i];
+            int z = snapshot.z[i];
+
+            // Announce the player's id before its first use, and again after a rename
+            int id = snapshot.ids[i];
+            if (!payload.name().equals(state.announced.get(id))) {
+                entries.add(new PlayerDictionaryEntry(id, payload.uuid(), payload.name()));
+                state.announced.put(id, payload.name());
+            }
+
+            RecipientState.Baseline baseline = state.baselines.get(payload.uuid());
+            if (keyframe || needsKeyframe(baseline, payload, x, y, z)) {
+                if (baseline == null) {
+                    baseline = new RecipientState.Baseline();
+                    state.baselines.put(payload.uuid(), baseline);
+                }
+                keyframes.add(snapshot.keyframe(i));
+                keyframeRecords.add(snapshot.record(i));
+                baseline.world = payload.world();
+            } else {
+                int dx = x - baseline.x;
+                int dy = y - baseline.y;
+                int dz = z - baseline.z;
+                if (dx == 0 && dy == 0 && dz == 0) {
+                    // Unchanged players are skipped entirely
+                    continue;
+                }
+                deltas.add(new PlayerCoordinatesDelta(id, dx, dy, dz));
+            }
+            baseline.x = x;
+            baseline.y = y;
+            baseline.z = z;
+        }
+
+        if (entries.isEmpty() && keyframes.isEmpty() && deltas.isEmpty()) {
+            return null;
+        }
+        // Keyframes are assembled from the records pre-encoded in the snapshot
+        return new PlayerCoordinatesBatchPayload(entries, keyframes, deltas, PlayerRecordBuffer.compose(keyframeRecords));
+    }
+
+    /**
+     * Removes the players the recipient no longer shares a channel with from its client, the same way
+     * as a logout, and forgets them so they are announced again if they become visible.
+     */
+    private static void hideUnseen(BroadcastSnapshot snapshot, int r, RecipientState state) {
+        Iterator<UUID> iterator = state.baselines.keySet().iterator();
+        while (iterator.hasNext()) {
+            UUID uuid = iterator.next();
+            int i = snapshot.indexOf(uuid);
+            if (snapshot.sees(r, i)) {
+                continue;
+            }
+            iterator.remove();
+            state.announced.remove(snapshot.ids[i]);
+            state.backlog.send(snapshot.connections[r], new PlayerLogoutPayload(uuid), LOGOUT_PAYLOAD_SIZE);
+        }
+    }
+
+    /**
+     * Picks the update tier of a player for a recipient from their distance and the player's speed.
+     */
+    private static int tierOf(BroadcastSnapshot snapshot, int r, int i) {
+        if (!snapshot.players.get(i).world().equals(snapshot.players.get(r).world())) {
+            // Only sent to announce a dimension change
+            return LEVEL_MID;
+        }
+        double distanceSq = horizontalDistanceSq(snapshot, r, i);
+        double near = ServerConfig.getNearRadius();
+        double interest = ServerConfig.getInterestRadius();
+        int tier;
+        if (distanceSq <= near * near) {
+            tier = LEVEL_NEAR;
+        } else if (distanceSq <= interest * interest) {
+            tier = LEVEL_MID;
+        } else {
+            tier = LEVEL_FAR;
+        }
+        if (snapshot.fast[i] && tier > LEVEL_NEAR) {
+            tier--;
+        }
+        return tier;
+    }
+
+    private static double horizontalDistanceSq(BroadcastSnapshot snapshot, int r, int i) {
+        PlayerCoordinatesPayload self = snapshot.players.get(r);
+        PlayerCoordinatesPayload other = snapshot.players.get(i);
+        double dx = other.x() - self.x();
+        double dz = other.z() - self.z();
+        return dx * dx + dz * dz;
+    }
+
+    private static boolean needsKeyframe(RecipientState.Baseline baseline, PlayerCoordinatesPayload payload, int x, int y, int z) {
+        return baseline == null
+            || !baseline.world.equals(payload.world())
+            || Math.abs(x - baseline.x) > MAX_DELTA
+            || Math.abs(y - baseline.y) > MAX_DELTA
+            || Math.abs(z - baseline.z) > MAX_DELTA;
+    }
+}
@@ -0,0 +1,72 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+
+/**
+ * Immutable copy of the online players' positions, taken on the server thread at the end of a tick.
+ * Capturing only copies references and primitives; everything else happens on the broadcast worker.
+ */
+record CapturedPlayers(
+    int tick,
+    ServerPlayer[] connections,
+    UUID[] uuids,
+    String[] names,
+    ResourceKey<Level>[] dimensions,
+    double[] x,
+    double[] y,
+    double[] z,
+    // Whether each player negotiated the dictionary protocol and can receive batches
+    boolean[] compact,
+    // ClientCapabilities slot and ShareChannels audience of each player
+    int[] slots,
+    BitSet[] audiences,
+    // Players each player follows
+    UUID[][] following,
+    RegistryAccess registryAccess
+) {
+
+    @SuppressWarnings("unchecked")
+    static CapturedPlayers capture(MinecraftServer server) {
+        List<ServerPlayer> players = server.getPlayerList().getPlayers();
+        int count = players.size();
+        ServerPlayer[] connections = new ServerPlayer[count];
+        UUID[] uuids = new UUID[count];
+        String[] names = new String[count];
+        ResourceKey<Level>[] dimensions = new ResourceKey[count];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        boolean[] compact = new boolean[count];
+        int[] slots = new int[count];
+        BitSet[] audiences = new BitSet[count];
+        UUID[][] following = new UUID[count][];
+        for (int i = 0; i < count; i++) {
+            ServerPlayer player = players.get(i);
+            connections[i] = player;
+            uuids[i] = player.getUUID();
+            names[i] = player.getScoreboardName();
+            dimensions[i] = player.level().dimension();
+            x[i] = player.getX();
+            y[i] = player.getY();
+            z[i] = player.getZ();
+            compact[i] = ClientCapabilities.has(player, ClientCapabilities.Capability.COORDINATE_BATCH);
+            slots[i] = ClientCapabilities.slot(player);
+            audiences[i] = ShareChannels.audience(uuids[i]);
+            following[i] = FollowHandler.following(uuids[i]);
+        }
+        return new CapturedPlayers(server.getTickCount(), connections, uuids, names, dimensions, x, y, z, compact,
+            slots, audiences, following, server.registryAccess());
+    }
+
+    int size() {
+        return uuids.length;
+    }
+}
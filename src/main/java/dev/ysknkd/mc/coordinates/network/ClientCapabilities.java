@@ -0,0 +1,177 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.networking.v1.S2CPlayChannelEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+
+/**
+ * Server side registry of what each connected client supports.
+ * Every player gets a dense slot on join; for each {@link Capability} a bitset of slots is kept up to
+ * date from the channels the client registered and the protocol version it negotiated, so broadcasts
+ * iterate the matching bitset instead of checking every player each time.
+ * <p>
+ * Only accessed on the server thread.
+ */
+public final class ClientCapabilities {
+
+    /**
+     * What a client can receive. The share variants are exclusive; a client gets the best it supports.
+     * Clients with {@link #SHARE_PATCH} also have {@link #SHARE_BATCH}.
+     */
+    public enum Capability {
+        COORDINATE_BATCH,
+        LEGACY_SHARE,
+        COMPACT_SHARE,
+        SHARE_BATCH,
+        SHARE_PATCH,
+        DIGEST_SYNC,
+        FOLLOW,
+        LOGOUT
+    }
+
+    private static final int NONE = -1;
+
+    private static final Object2IntOpenHashMap<UUID> slots = new Object2IntOpenHashMap<>();
+    // Connection of each slot; the handler outlives the ServerPlayer, which is replaced on respawn
+    private static final List<ServerGamePacketListenerImpl> connections = new ArrayList<>();
+    private static final IntArrayList versions = new IntArrayList();
+    private static final BitSet used = new BitSet();
+    private static final BitSet[] capabilities = new BitSet[Capability.values().length];
+
+    static {
+        slots.defaultReturnValue(NONE);
+        for (int i = 0; i < capabilities.length; i++) {
+            capabilities[i] = new BitSet();
+        }
+    }
+
+    private ClientCapabilities() {
+    }
+
+    public static void register() {
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> add(handler));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> remove(handler.getPlayer().getUUID()));
+        // Channels rarely change after joining, but keep up if they do
+        S2CPlayChannelEvents.REGISTER.register((handler, sender, server, channels) ->
+            server.execute(() -> refresh(handler.getPlayer())));
+        S2CPlayChannelEvents.UNREGISTER.register((handler, sender, server, channels) ->
+            server.execute(() -> refresh(handler.getPlayer())));
+    }
+
+    /**
+     * Records the protocol version negotiated in the handshake.
+     */
+    static void setVersion(ServerPlayer player, int version) {
+        int slot = slots.getInt(player.getUUID());
+        if (slot != NONE) {
+            versions.set(slot, version);
+            update(slot, player);
+        }
+    }
+
+    /**
+     * @return The negotiated protocol version, or {@link HandshakePayload#LEGACY_VERSION} if no handshake happened
+     */
+    public static int getVersion(ServerPlayer player) {
+        int slot = slots.getInt(player.getUUID());
+        return slot != NONE ? versions.getInt(slot) : HandshakePayload.LEGACY_VERSION;
+    }
+
+    /**
+     * @return The slot of an online player, or -1 if the player is not known
+     */
+    static int slot(ServerPlayer player) {
+        return slots.getInt(player.getUUID());
+    }
+
+    public static boolean has(ServerPlayer player, Capability capability) {
+        int slot = slots.getInt(player.getUUID());
+        return slot != NONE && capabilities[capability.ordinal()].get(slot);
+    }
+
+    /**
+     * Returns the slots of the players with a capability. The bitset is live and must not be modified.
+     */
+    public static BitSet players(Capability capability) {
+        return capabilities[capability.ordinal()];
+    }
+
+    /**
+     * @return The player in a slot returned by {@link #players(Capability)}
+     */
+    public static ServerPlayer player(int slot) {
+        return connections.get(slot).getPlayer();
+    }
+
+    private static void add(ServerGamePacketListenerImpl handler) {
+        ServerPlayer player = handler.getPlayer();
+        int slot = slots.getInt(player.getUUID());
+        if (slot == NONE) {
+            slot = used.nextClearBit(0);
+            used.set(slot);
+            slots.put(player.getUUID(), slot);
+        }
+        while (connections.size() <= slot) {
+            connections.add(null);
+            versions.add(HandshakePayload.LEGACY_VERSION);
+        }
+        connections.set(slot, handler);
+        versions.set(slot, HandshakePayload.LEGACY_VERSION);
+        update(slot, player);
+    }
+
+    private static void remove(UUID uuid) {
+        int slot = slots.removeInt(uuid);
+        if (slot == NONE) {
+            return;
+        }
+        used.clear(slot);
+        connections.set(slot, null);
+        versions.set(slot, HandshakePayload.LEGACY_VERSION);
+        for (BitSet set : capabilities) {
+            set.clear(slot);
+        }
+    }
+
+    private static void refresh(ServerPlayer player) {
+        int slot = slots.getInt(player.getUUID());
+        if (slot != NONE) {
+            update(slot, player);
+        }
+    }
+
+    private static void update(int slot, ServerPlayer player) {
+        int version = versions.getInt(slot);
+        boolean batch = version >= HandshakePayload.DICTIONARY_VERSION
+            && ServerPlayNetworking.canSend(player, PlayerCoordinatesBatchPayload.ID);
+        boolean shareBatch = version >= HandshakePayload.COMPACT_VERSION
+            && ServerPlayNetworking.canSend(player, ShareCoordinatesBatchPayload.ID);
+        boolean compactShare = !shareBatch && version >= HandshakePayload.COMPACT_VERSION
+            && ServerPlayNetworking.canSend(player, CompactShareCoordinatesPayload.ID);
+        set(Capability.COORDINATE_BATCH, slot, batch);
+        set(Capability.SHARE_BATCH, slot, shareBatch);
+        set(Capability.COMPACT_SHARE, slot, compactShare);
+        set(Capability.LEGACY_SHARE, slot, !shareBatch && !compactShare
+            && ServerPlayNetworking.canSend(player, ShareCoordinatesPayload.ID));
+        set(Capability.SHARE_PATCH, slot, shareBatch && version >= HandshakePayload.PATCH_VERSION
+            && ServerPlayNetworking.canSend(player, ShareCoordinatesPatchBatchPayload.ID));
+        set(Capability.DIGEST_SYNC, slot, shareBatch && version >= HandshakePayload.SYNC_VERSION
+            && ServerPlayNetworking.canSend(player, WaypointManifestPayload.ID));
+        set(Capability.FOLLOW, slot, batch && version >= HandshakePayload.FOLLOW_VERSION
+            && ServerPlayNetworking.canSend(player, FollowStatusPayload.ID));
+        set(Capability.LOGOUT, slot, ServerPlayNetworking.canSend(player, PlayerLogoutPayload.ID));
+    }
+
+    private static void set(Capability capability, int slot, boolean value) {
+        capabilities[capability.ordinal()].set(slot, value);
+    }
+}
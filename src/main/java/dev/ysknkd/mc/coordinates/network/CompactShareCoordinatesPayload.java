@@ -0,0 +1,92 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Compact form of {@link ShareCoordinatesPayload}, used once both peers have completed the handshake
+ * with at least {@link HandshakePayload#COMPACT_VERSION}. Coordinates are fixed-point zig-zag VarInts,
+ * the dimension is a {@link DimensionTable} index and the icon is a {@link WaypointIcon} ordinal.
+ */
+public record CompactShareCoordinatesPayload(
+        UUID sender,
+        UUID uuid,
+        int x,
+        int y,
+        int z,
+        String description,
+        int dimension,
+        String world,
+        boolean pinned,
+        WaypointIcon icon
+) implements CustomPacketPayload {
+
+    public static final CustomPacketPayload.Type<CompactShareCoordinatesPayload> ID =
+            new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "share_coordinates_compact"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, CompactShareCoordinatesPayload> CODEC =
+            StreamCodec.ofMember(CompactShareCoordinatesPayload::encode, CompactShareCoordinatesPayload::decode);
+
+    /**
+     * Converts a share to its compact form.
+     *
+     * @param share The share to convert
+     * @param dimensions The dimension table negotiated with the peer
+     * @return The compact payload
+     */
+    public static CompactShareCoordinatesPayload of(ShareCoordinatesPayload share, DimensionTable dimensions) {
+        int dimension = dimensions.indexOf(share.world());
+        return new CompactShareCoordinatesPayload(share.sender(), share.uuid(),
+                Quantization.quantize(share.x()), Quantization.quantize(share.y()), Quantization.quantize(share.z()),
+                share.description(), dimension, dimension == DimensionTable.UNKNOWN ? share.world() : null,
+                share.pinned(), WaypointIcon.fromName(share.icon()));
+    }
+
+    /**
+     * Expands this payload back to the full representation.
+     *
+     * @param dimensions The dimension table negotiated with the peer
+     * @return The equivalent share
+     */
+    public ShareCoordinatesPayload toShare(DimensionTable dimensions) {
+        return new ShareCoordinatesPayload(sender, uuid,
+                Quantization.dequantize(x), Quantization.dequantize(y), Quantization.dequantize(z),
+                description, dimensions.nameOf(dimension, world), pinned, icon.getName());
+    }
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        buf.writeUUID(sender);
+        buf.writeUUID(uuid);
+        Quantization.writeSignedVarInt(buf, x);
+        Quantization.writeSignedVarInt(buf, y);
+        Quantization.writeSignedVarInt(buf, z);
+        buf.writeUtf(description != null ? description : "");
+        DimensionTable.write(buf, dimension, world);
+        buf.writeBoolean(pinned);
+        buf.writeVarInt(icon.ordinal());
+    }
+
+    private static CompactShareCoordinatesPayload decode(RegistryFriendlyByteBuf buf) {
+        UUID sender = buf.readUUID();
+        UUID uuid = buf.readUUID();
+        int x = Quantization.readSignedVarInt(buf);
+        int y = Quantization.readSignedVarInt(buf);
+        int z = Quantization.readSignedVarInt(buf);
+        String description = buf.readUtf(ShareCoordinatesPayload.MAX_DESCRIPTION_LENGTH);
+        int dimension = DimensionTable.readIndex(buf);
+        String world = dimension == DimensionTable.UNKNOWN ? DimensionTable.readInlineName(buf) : null;
+        boolean pinned = buf.readBoolean();
+        WaypointIcon icon = WaypointIcon.fromOrdinal(buf.readVarInt());
+        return new CompactShareCoordinatesPayload(sender, uuid, x, y, z, description, dimension, world, pinned, icon);
+    }
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
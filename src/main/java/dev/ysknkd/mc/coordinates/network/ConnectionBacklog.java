@@ -0,0 +1,32 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.ChannelFutureListener;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Estimate of the coordinate bytes queued on one connection but not yet written to the socket.
+ * Every send adds its estimated size, and the write's completion (or failure) on the network thread
+ * removes it again, so a client that cannot keep up shows a growing backlog.
+ */
+final class ConnectionBacklog {
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    /**
+     * @return true if the backlog is above the configured high-water mark
+     */
+    boolean isCongested(long maxPendingBytes) {
+        return pendingBytes.get() > maxPendingBytes;
+    }
+
+    void send(ServerPlayer recipient, CustomPacketPayload payload, int estimatedSize) {
+        pendingBytes.addAndGet(estimatedSize);
+        ChannelFutureListener release = future -> pendingBytes.addAndGet(-estimatedSize);
+        ServerPlayNetworking.getSender(recipient).sendPacket(payload, release);
+        BroadcastMetrics.recordSent(estimatedSize);
+    }
+}
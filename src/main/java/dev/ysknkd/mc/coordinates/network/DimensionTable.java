@@ -0,0 +1,76 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * Maps dimension identifiers (e.g. "minecraft:overworld") to the small indices used on the wire.
+ * The server builds the table from its levels and sends it once during the handshake.
+ * Dimensions missing from the table are written inline as strings.
+ */
+public final class DimensionTable {
+
+    public static final int UNKNOWN = -1;
+    // Longest dimension identifier accepted when decoding
+    public static final int MAX_NAME_LENGTH = 256;
+    public static final DimensionTable EMPTY = new DimensionTable(List.of());
+
+    private final List<String> names;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    public DimensionTable(List<String> names) {
+        this.names = List.copyOf(names);
+        for (int i = 0; i < this.names.size(); i++) {
+            indices.put(this.names.get(i), i);
+        }
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * @param world Dimension identifier
+     * @return The index of the dimension, or {@link #UNKNOWN} if it is not in the table
+     */
+    public int indexOf(String world) {
+        return world == null ? UNKNOWN : indices.getOrDefault(world, UNKNOWN);
+    }
+
+    /**
+     * @param index Index received on the wire
+     * @param fallback Inline name sent when the index is {@link #UNKNOWN}
+     * @return The dimension identifier
+     */
+    public String nameOf(int index, String fallback) {
+        if (index < 0 || index >= names.size()) {
+            return fallback != null ? fallback : "unknown";
+        }
+        return names.get(index);
+    }
+
+    /**
+     * Writes a dimension reference: the index shifted by one, followed by the name when it is not indexed.
+     */
+    public static void write(FriendlyByteBuf buf, int index, String world) {
+        buf.writeVarInt(index + 1);
+        if (index == UNKNOWN) {
+            buf.writeUtf(world != null ? world : "");
+        }
+    }
+
+    /**
+     * Reads the index written by {@link #write}. When it is {@link #UNKNOWN}, the inline name
+     * must be read next with {@link #readInlineName}.
+     */
+    public static int readIndex(FriendlyByteBuf buf) {
+        return buf.readVarInt() - 1;
+    }
+
+    public static String readInlineName(FriendlyByteBuf buf) {
+        return buf.readUtf(MAX_NAME_LENGTH);
+    }
+}
@@ -0,0 +1,167 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.Context;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Grants and revokes follows: a follower receives the followed player's position every
+ * {@link ServerConfig#getFollowUpdateTicks()} ticks instead of at the distance-based rate.
+ * Each player may follow up to {@link ServerConfig#getMaxFollowTargets()} players, and a follow ends
+ * when either player leaves, when they stop sharing a channel, or when they are further apart than
+ * {@link ServerConfig#getFollowRange()} or in different dimensions.
+ * <p>
+ * All state is only accessed on the server thread; the broadcast worker receives the follows with
+ * each capture.
+ */
+public class FollowHandler {
+
+    // How often follows are checked for range and visibility, in ticks
+    private static final int CHECK_TICKS = 20;
+    private static final UUID[] NONE = new UUID[0];
+
+    private static final Map<UUID, Set<UUID>> follows = new HashMap<>();
+    // Copy of each player's follows handed to the broadcast worker, replaced on change
+    private static final Map<UUID, UUID[]> published = new HashMap<>();
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(FollowRequestPayload.ID, FollowRequestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(FollowStatusPayload.ID, FollowStatusPayload.CODEC);
+
+        ServerPlayNetworking.registerGlobalReceiver(FollowRequestPayload.ID, FollowHandler::receive);
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTickCount() % CHECK_TICKS == 0) {
+                check(server);
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> disconnect(handler.getPlayer().getUUID(), server));
+    }
+
+    /**
+     * @return The players a player follows; the array must not be modified
+     */
+    static UUID[] following(UUID follower) {
+        return published.getOrDefault(follower, NONE);
+    }
+
+    private static void receive(FollowRequestPayload payload, Context context) {
+        ServerPlayer follower = context.player();
+        MinecraftServer server = context.server();
+        server.execute(() -> {
+            if (!ClientCapabilities.has(follower, ClientCapabilities.Capability.FOLLOW)) {
+                return;
+            }
+            if (!payload.follow()) {
+                Set<UUID> targets = follows.get(follower.getUUID());
+                if (targets != null && targets.remove(payload.target())) {
+                    publish(follower.getUUID());
+                }
+                send(follower, payload.target(), false, FollowStatusPayload.Reason.STOPPED);
+                return;
+            }
+            ServerPlayer target = server.getPlayerList().getPlayer(payload.target());
+            FollowStatusPayload.Reason refusal = refusal(follower, target);
+            if (refusal == null) {
+                Set<UUID> targets = follows.computeIfAbsent(follower.getUUID(), uuid -> new LinkedHashSet<>());
+                if (!targets.contains(target.getUUID()) && targets.size() >= ServerConfig.getMaxFollowTargets()) {
+                    refusal = FollowStatusPayload.Reason.LIMIT_REACHED;
+                } else {
+                    targets.add(target.getUUID());
+                    publish(follower.getUUID());
+                }
+            }
+            send(follower, payload.target(), refusal == null,
+                refusal == null ? FollowStatusPayload.Reason.GRANTED : refusal);
+        });
+    }
+
+    /**
+     * @return Why the follower may not follow the target, or null if it may
+     */
+    private static FollowStatusPayload.Reason refusal(ServerPlayer follower, ServerPlayer target) {
+        if (target == null || target == follower) {
+            return FollowStatusPayload.Reason.OFFLINE;
+        }
+        if (!ShareChannels.canSee(follower.getUUID(), target.getUUID())) {
+            return FollowStatusPayload.Reason.NOT_VISIBLE;
+        }
+        if (target.level() != follower.level()) {
+            return FollowStatusPayload.Reason.OUT_OF_RANGE;
+        }
+        double dx = target.getX() - follower.getX();
+        double dz = target.getZ() - follower.getZ();
+        double range = ServerConfig.getFollowRange();
+        return dx * dx + dz * dz > range * range ? FollowStatusPayload.Reason.OUT_OF_RANGE : null;
+    }
+
+    /**
+     * Ends the follows that are no longer allowed.
+     */
+    private static void check(MinecraftServer server) {
+        if (follows.isEmpty()) {
+            return;
+        }
+        List<UUID> changed = new ArrayList<>();
+        for (Map.Entry<UUID, Set<UUID>> entry : follows.entrySet()) {
+            ServerPlayer follower = server.getPlayerList().getPlayer(entry.getKey());
+            if (follower == null) {
+                continue;
+            }
+            Iterator<UUID> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                UUID uuid = iterator.next();
+                FollowStatusPayload.Reason refusal = refusal(follower, server.getPlayerList().getPlayer(uuid));
+                if (refusal != null) {
+                    iterator.remove();
+                    changed.add(follower.getUUID());
+                    send(follower, uuid, false, refusal);
+                }
+            }
+        }
+        changed.forEach(FollowHandler::publish);
+    }
+
+    private static void disconnect(UUID uuid, MinecraftServer server) {
+        follows.remove(uuid);
+        published.remove(uuid);
+        List<UUID> changed = new ArrayList<>();
+        for (Map.Entry<UUID, Set<UUID>> entry : follows.entrySet()) {
+            if (entry.getValue().remove(uuid)) {
+                changed.add(entry.getKey());
+                ServerPlayer follower = server.getPlayerList().getPlayer(entry.getKey());
+                if (follower != null) {
+                    send(follower, uuid, false, FollowStatusPayload.Reason.OFFLINE);
+                }
+            }
+        }
+        changed.forEach(FollowHandler::publish);
+    }
+
+    private static void publish(UUID follower) {
+        Set<UUID> targets = follows.get(follower);
+        if (targets == null || targets.isEmpty()) {
+            follows.remove(follower);
+            published.remove(follower);
+        } else {
+            published.put(follower, targets.toArray(new UUID[0]));
+        }
+    }
+
+    private static void send(ServerPlayer follower, UUID target, boolean following, FollowStatusPayload.Reason reason) {
+        ServerPlayNetworking.send(follower, new FollowStatusPayload(target, following, reason));
+    }
+}
@@ -0,0 +1,32 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Asks the server to start or stop sending a player's position at the follow rate.
+ * The server answers with a {@link FollowStatusPayload}.
+ */
+public record FollowRequestPayload(UUID target, boolean follow) implements CustomPacketPayload {
+
+    public static final CustomPacketPayload.Type<FollowRequestPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "follow_request"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, FollowRequestPayload> CODEC = StreamCodec.composite(
+        UUIDUtil.STREAM_CODEC, FollowRequestPayload::target,
+        ByteBufCodecs.BOOL, FollowRequestPayload::follow,
+        FollowRequestPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
@@ -0,0 +1,51 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Tells the client whether it now follows a player, in answer to a {@link FollowRequestPayload} or
+ * when the server ends a follow on its own.
+ */
+public record FollowStatusPayload(UUID target, boolean following, Reason reason) implements CustomPacketPayload {
+
+    /**
+     * Why a follow started or ended. Constants must only ever be appended so that ordinals stay stable.
+     */
+    public enum Reason {
+        GRANTED,
+        STOPPED,
+        OFFLINE,
+        OUT_OF_RANGE,
+        NOT_VISIBLE,
+        LIMIT_REACHED;
+
+        private static final Reason[] VALUES = values();
+
+        static Reason fromOrdinal(int ordinal) {
+            return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : STOPPED;
+        }
+    }
+
+    public static final CustomPacketPayload.Type<FollowStatusPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "follow_status"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, FollowStatusPayload> CODEC = StreamCodec.composite(
+        UUIDUtil.STREAM_CODEC, FollowStatusPayload::target,
+        ByteBufCodecs.BOOL, FollowStatusPayload::following,
+        ByteBufCodecs.VAR_INT.map(Reason::fromOrdinal, Reason::ordinal), FollowStatusPayload::reason,
+        FollowStatusPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
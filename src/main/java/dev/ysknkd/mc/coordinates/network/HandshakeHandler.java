@@ -0,0 +1,78 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.Context;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.PlayPayloadHandler;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+
+/**
+ * Server side of the protocol version handshake.
+ * Records the version each client announced and answers with the server's version and dimension table.
+ */
+public class HandshakeHandler implements PlayPayloadHandler<HandshakePayload> {
+
+    private static volatile DimensionTable dimensions = DimensionTable.EMPTY;
+    // Called on the server thread once a player's handshake completed
+    private static final List<Consumer<ServerPlayer>> listeners = new ArrayList<>();
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(HandshakePayload.ID, HandshakePayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(HandshakePayload.ID, HandshakePayload.CODEC);
+
+        ServerPlayNetworking.registerGlobalReceiver(HandshakePayload.ID, new HandshakeHandler());
+        ServerLifecycleEvents.SERVER_STARTED.register(HandshakeHandler::buildDimensionTable);
+    }
+
+    @Override
+    public void receive(HandshakePayload payload, Context context) {
+        ServerPlayer player = context.player();
+        context.server().execute(() -> {
+            int version = Math.min(payload.version(), HandshakePayload.CURRENT_VERSION);
+            ClientCapabilities.setVersion(player, version);
+            ServerPlayNetworking.send(player, new HandshakePayload(HandshakePayload.CURRENT_VERSION, dimensions.names()));
+            for (Consumer<ServerPlayer> listener : listeners) {
+                listener.accept(player);
+            }
+        });
+    }
+
+    /**
+     * Registers a callback run on the server thread after a player's handshake, once the negotiated
+     * version is available through {@link #getVersion(ServerPlayer)}.
+     */
+    public static void registerListener(Consumer<ServerPlayer> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the protocol version negotiated with the given player.
+     *
+     * @param player The player
+     * @return The negotiated version, or {@link HandshakePayload#LEGACY_VERSION} if no handshake happened
+     */
+    public static int getVersion(ServerPlayer player) {
+        return ClientCapabilities.getVersion(player);
+    }
+
+    public static DimensionTable getDimensions() {
+        return dimensions;
+    }
+
+    private static void buildDimensionTable(MinecraftServer server) {
+        List<String> names = new ArrayList<>();
+        for (ResourceKey<Level> key : server.levelKeys()) {
+            names.add(key.identifier().toString());
+        }
+        names.sort(null);
+        dimensions = new DimensionTable(names);
+    }
+}
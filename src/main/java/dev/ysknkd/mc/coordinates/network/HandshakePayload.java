@@ -0,0 +1,51 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Protocol version handshake, sent in both directions right after joining.
+ * The client announces the highest protocol version it understands; the server answers with its own
+ * version and the dimension table used by compact payloads. Peers that never complete the handshake
+ * are treated as {@link #LEGACY_VERSION} and keep receiving the original payloads.
+ */
+public record HandshakePayload(int version, List<String> dimensions) implements CustomPacketPayload {
+
+    // Per-player coordinate payloads with full doubles and strings
+    public static final int LEGACY_VERSION = 1;
+    // Batched, fixed-point payloads with indexed dimensions and icons
+    public static final int COMPACT_VERSION = 2;
+    // Players referenced by session ids announced once per recipient
+    public static final int DICTIONARY_VERSION = 3;
+    // Shared waypoints reconciled by digest after joining instead of all being sent again
+    public static final int SYNC_VERSION = 4;
+    // Edits of shared waypoints sent as field-level patches
+    public static final int PATCH_VERSION = 5;
+    // Players followed at a higher rate on request
+    public static final int FOLLOW_VERSION = 6;
+    public static final int CURRENT_VERSION = FOLLOW_VERSION;
+
+    // Most dimensions accepted in a table
+    private static final int MAX_DIMENSIONS = 1024;
+
+    public static final CustomPacketPayload.Type<HandshakePayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "handshake"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, HandshakePayload> CODEC = StreamCodec.composite(
+        ByteBufCodecs.VAR_INT, HandshakePayload::version,
+        ByteBufCodecs.stringUtf8(DimensionTable.MAX_NAME_LENGTH).apply(ByteBufCodecs.list(MAX_DIMENSIONS)),
+        HandshakePayload::dimensions,
+        HandshakePayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
@@ -0,0 +1,112 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Payload carrying the coordinates of every player visible to the recipient in a single packet.
+ * Players are referenced by session ids; the batch starts with the dictionary entries the recipient
+ * has not seen yet, followed by the updates. Keyframes carry a player's full state; deltas carry only
+ * the movement since the previous state sent to the same recipient. Players that have not moved are
+ * omitted.
+ * <p>
+ * On the server the keyframes may already be encoded (see {@link PlayerRecordBuffer}); in that case
+ * the pre-encoded bytes are copied to the wire instead of running the codec again.
+ */
+public record PlayerCoordinatesBatchPayload(
+    List<PlayerDictionaryEntry> entries,
+    List<PlayerKeyframe> keyframes,
+    List<PlayerCoordinatesDelta> deltas,
+    ByteBuf encodedKeyframes
+) implements CustomPacketPayload {
+
+    public static final CustomPacketPayload.Type<PlayerCoordinatesBatchPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "player_coordinates_batch"));
+
+    // Upper bound of each list, checked before allocating it
+    public static final int MAX_RECORDS = 1 << 16;
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, PlayerCoordinatesBatchPayload> CODEC =
+        StreamCodec.ofMember(PlayerCoordinatesBatchPayload::encode, PlayerCoordinatesBatchPayload::decode);
+
+    public PlayerCoordinatesBatchPayload(List<PlayerDictionaryEntry> entries, List<PlayerKeyframe> keyframes,
+                                         List<PlayerCoordinatesDelta> deltas) {
+        this(entries, keyframes, deltas, null);
+    }
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        buf.writeVarInt(entries.size());
+        for (PlayerDictionaryEntry entry : entries) {
+            PlayerDictionaryEntry.CODEC.encode(buf, entry);
+        }
+        buf.writeVarInt(keyframes.size());
+        if (encodedKeyframes != null) {
+            // Copy without touching the reader index so the same records can be written to many channels
+            buf.writeBytes(encodedKeyframes, encodedKeyframes.readerIndex(), encodedKeyframes.readableBytes());
+        } else {
+            for (PlayerKeyframe keyframe : keyframes) {
+                PlayerKeyframe.CODEC.encode(buf, keyframe);
+            }
+        }
+        buf.writeVarInt(deltas.size());
+        for (PlayerCoordinatesDelta delta : deltas) {
+            PlayerCoordinatesDelta.CODEC.encode(buf, delta);
+        }
+    }
+
+    private static PlayerCoordinatesBatchPayload decode(RegistryFriendlyByteBuf buf) {
+        int entryCount = readCount(buf);
+        List<PlayerDictionaryEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(PlayerDictionaryEntry.CODEC.decode(buf));
+        }
+        int keyframeCount = readCount(buf);
+        List<PlayerKeyframe> keyframes = new ArrayList<>(keyframeCount);
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframes.add(PlayerKeyframe.CODEC.decode(buf));
+        }
+        int deltaCount = readCount(buf);
+        List<PlayerCoordinatesDelta> deltas = new ArrayList<>(deltaCount);
+        for (int i = 0; i < deltaCount; i++) {
+            deltas.add(PlayerCoordinatesDelta.CODEC.decode(buf));
+        }
+        return new PlayerCoordinatesBatchPayload(entries, keyframes, deltas);
+    }
+
+    private static int readCount(RegistryFriendlyByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > MAX_RECORDS) {
+            throw new DecoderException("Too many records in player coordinates batch: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the encoded size without encoding the payload.
+     */
+    public int estimatedSize() {
+        int size = 3;
+        for (PlayerDictionaryEntry entry : entries) {
+            size += 18 + entry.name().length();
+        }
+        size += encodedKeyframes != null ? encodedKeyframes.readableBytes() : keyframes.size() * 10;
+        return size + deltas.size() * 5;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty() && keyframes.isEmpty() && deltas.isEmpty();
+    }
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
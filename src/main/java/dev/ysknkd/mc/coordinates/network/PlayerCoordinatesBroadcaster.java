@@ -1,47 +1,113 @@
 package dev.ysknkd.mc.coordinates.network;
 
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Sends the positions of other players to each client.
+ * The server thread only copies the players' positions at the end of each tick; building, encoding
+ * and sending the packets happens on a dedicated thread in {@link BroadcastWorker}.
+ * If the worker falls behind, only the latest capture is kept and the skipped ticks are folded into it.
+ */
 public class PlayerCoordinatesBroadcaster implements ServerTickEvents.EndTick {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    private static PlayerCoordinatesBroadcaster instance;
+
+    private final BroadcastWorker worker = new BroadcastWorker();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mc-coordinates-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Latest capture not yet picked up by the worker
+    private final AtomicReference<CapturedPlayers> pending = new AtomicReference<>();
+
     public static void register() {
         PayloadTypeRegistry.clientboundPlay().register(PlayerCoordinatesPayload.ID, PlayerCoordinatesPayload.CODEC);
-        ServerTickEvents.END_SERVER_TICK.register(new PlayerCoordinatesBroadcaster());
+        PayloadTypeRegistry.clientboundPlay().register(PlayerCoordinatesBatchPayload.ID, PlayerCoordinatesBatchPayload.CODEC);
+
+        PlayerCoordinatesBroadcaster broadcaster = new PlayerCoordinatesBroadcaster();
+        instance = broadcaster;
+        ServerTickEvents.END_SERVER_TICK.register(broadcaster);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            UUID uuid = handler.getPlayer().getUUID();
+            // Runs on the worker so it is ordered with the captures
+            broadcaster.submit(() -> broadcaster.worker.remove(uuid));
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> broadcaster.executor.shutdownNow());
+    }
+
+    /**
+     * Sends a player that just joined the positions of every player it may see, in one batch with the
+     * next snapshot rather than on its next scheduled update.
+     *
+     * @param player The player who joined
+     */
+    public static void sendSnapshot(ServerPlayer player) {
+        if (instance != null) {
+            UUID uuid = player.getUUID();
+            instance.submit(() -> instance.worker.join(uuid));
+        }
+    }
+
+    /**
+     * Tells the given players that a player logged out, on the worker after the batches already queued,
+     * so none of them can announce the player again once the logout arrived.
+     *
+     * @param uuid    The player who logged out
+     * @param targets The players to tell
+     */
+    public static void sendLogout(UUID uuid, List<ServerPlayer> targets) {
+        if (instance != null) {
+            instance.submit(() -> instance.worker.logout(uuid, targets));
+        }
     }
 
     @Override
     public void onEndTick(MinecraftServer server) {
-        // Broadcast coordinate data every 20 ticks (approximately 1 second interval)
-        if (server.getTickCount() % 20 == 0) {
-            send(server);
+        if (server.getPlayerList().getPlayers().isEmpty()) {
+            return;
+        }
+        // A drain task is only queued when none is waiting for a capture already
+        if (pending.getAndSet(CapturedPlayers.capture(server)) == null) {
+            submit(this::drain);
+        }
+    }
+
+    private void drain() {
+        CapturedPlayers captured = pending.getAndSet(null);
+        if (captured != null) {
+            worker.process(captured);
         }
     }
 
-    private void send(MinecraftServer server) {
-        // For each recipient, send individual coordinate data of every other player
-        for (ServerPlayer recipient : server.getPlayerList().getPlayers()) {
-            if (!ServerPlayNetworking.canSend(recipient, PlayerCoordinatesPayload.ID)) {
-                continue;
-            }
-
-            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
-                if (!player.getUUID().equals(recipient.getUUID())) {
-                    String world = player.level().dimension().identifier().toString();
-                    PlayerCoordinatesPayload payload = new PlayerCoordinatesPayload(
-                        player.getUUID(),
-                        player.getX(),
-                        player.getY(),
-                        player.getZ(),
-                        player.getName().getString(),
-                        world
-                    );
-                    ServerPlayNetworking.send(recipient, payload);
+    private void submit(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to broadcast player coordinates", e);
                 }
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            // The server is stopping
         }
     }
 }
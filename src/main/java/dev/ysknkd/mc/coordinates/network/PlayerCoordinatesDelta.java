@@ -0,0 +1,29 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+
+/**
+ * Movement of a player since the last state the recipient received, in fixed-point units
+ * (see {@link Quantization}). The player is referenced by its {@link PlayerDictionaryEntry} id.
+ */
+public record PlayerCoordinatesDelta(int id, int dx, int dy, int dz) {
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, PlayerCoordinatesDelta> CODEC =
+        StreamCodec.ofMember(PlayerCoordinatesDelta::encode, PlayerCoordinatesDelta::decode);
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        buf.writeVarInt(id);
+        Quantization.writeSignedVarInt(buf, dx);
+        Quantization.writeSignedVarInt(buf, dy);
+        Quantization.writeSignedVarInt(buf, dz);
+    }
+
+    private static PlayerCoordinatesDelta decode(RegistryFriendlyByteBuf buf) {
+        int id = buf.readVarInt();
+        int dx = Quantization.readSignedVarInt(buf);
+        int dy = Quantization.readSignedVarInt(buf);
+        int dz = Quantization.readSignedVarInt(buf);
+        return new PlayerCoordinatesDelta(id, dx, dy, dz);
+    }
+}
@@ -0,0 +1,24 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+
+/**
+ * Announces the session id of a player inside a {@link PlayerCoordinatesBatchPayload}.
+ * Each recipient receives an entry once, before the first update that references the id, and again
+ * only if the player's name changes. Ids are retired on the client by {@link PlayerLogoutPayload}
+ * and may afterwards be reused for another player.
+ */
+public record PlayerDictionaryEntry(int id, UUID uuid, String name) {
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, PlayerDictionaryEntry> CODEC = StreamCodec.composite(
+        ByteBufCodecs.VAR_INT, PlayerDictionaryEntry::id,
+        UUIDUtil.STREAM_CODEC, PlayerDictionaryEntry::uuid,
+        ByteBufCodecs.STRING_UTF8, PlayerDictionaryEntry::name,
+        PlayerDictionaryEntry::new
+    );
+}
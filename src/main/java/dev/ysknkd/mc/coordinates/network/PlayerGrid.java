@@ -0,0 +1,89 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Per-dimension uniform grid over the players of one broadcast cycle.
+ * Players are referenced by their index in the cycle's snapshot. The cell size equals the query
+ * radius, so a radius query only has to look at the 3x3 cells around the recipient.
+ */
+final class PlayerGrid {
+
+    private final int cellSize;
+    private final List<PlayerCoordinatesPayload> snapshot;
+    private final Map<String, Long2ObjectOpenHashMap<IntArrayList>> cells = new HashMap<>();
+    private final Map<String, IntArrayList> members = new HashMap<>();
+
+    PlayerGrid(List<PlayerCoordinatesPayload> snapshot, int cellSize) {
+        this.snapshot = snapshot;
+        this.cellSize = cellSize;
+        for (int i = 0; i < snapshot.size(); i++) {
+            PlayerCoordinatesPayload player = snapshot.get(i);
+            long key = cellKey(cellOf(player.x()), cellOf(player.z()));
+            cells.computeIfAbsent(player.world(), world -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(key, k -> new IntArrayList())
+                .add(i);
+            members.computeIfAbsent(player.world(), world -> new IntArrayList()).add(i);
+        }
+    }
+
+    /**
+     * @param world Dimension identifier
+     * @return Indices of every player in the dimension
+     */
+    IntList inDimension(String world) {
+        IntArrayList list = members.get(world);
+        return list != null ? list : IntLists.emptyList();
+    }
+
+    /**
+     * Collects the players of a dimension within a horizontal radius of a point.
+     *
+     * @param world Dimension identifier
+     * @param x Center X
+     * @param z Center Z
+     * @param radius Radius in blocks, at most the cell size
+     * @param out Receives the indices of matching players
+     */
+    void collectNear(String world, double x, double z, double radius, IntList out) {
+        Long2ObjectOpenHashMap<IntArrayList> dimensionCells = cells.get(world);
+        if (dimensionCells == null) {
+            return;
+        }
+        double radiusSq = radius * radius;
+        int cx = cellOf(x);
+        int cz = cellOf(z);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                IntArrayList cell = dimensionCells.get(cellKey(cx + dx, cz + dz));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size(); i++) {
+                    int index = cell.getInt(i);
+                    PlayerCoordinatesPayload player = snapshot.get(index);
+                    double ox = player.x() - x;
+                    double oz = player.z() - z;
+                    if (ox * ox + oz * oz <= radiusSq) {
+                        out.add(index);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cellOf(double coordinate) {
+        return Math.floorDiv((int) Math.floor(coordinate), cellSize);
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.BitSet;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Assigns the session ids announced by {@link PlayerDictionaryEntry}.
+ * Ids are small and dense: a released id is handed out again to the next player, so they stay
+ * within one or two bytes as a VarInt however long the server runs.
+ */
+final class PlayerIds {
+
+    static final int NONE = -1;
+
+    private final Object2IntOpenHashMap<UUID> ids = new Object2IntOpenHashMap<>();
+    private final BitSet used = new BitSet();
+
+    PlayerIds() {
+        ids.defaultReturnValue(NONE);
+    }
+
+    /**
+     * Returns the id of a player, assigning the lowest free one on first use.
+     */
+    int idOf(UUID uuid) {
+        int id = ids.getInt(uuid);
+        if (id == NONE) {
+            id = used.nextClearBit(0);
+            used.set(id);
+            ids.put(uuid, id);
+        }
+        return id;
+    }
+
+    /**
+     * Frees the id of a player that left.
+     *
+     * @return The released id, or {@link #NONE} if the player had none
+     */
+    int release(UUID uuid) {
+        int id = ids.removeInt(uuid);
+        if (id != NONE) {
+            used.clear(id);
+        }
+        return id;
+    }
+}
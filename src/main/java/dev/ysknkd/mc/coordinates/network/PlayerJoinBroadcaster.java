@@ -0,0 +1,32 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Brings a player who just joined up to date right away: the positions of the other players and the
+ * waypoints shared before the player joined.
+ * Clients that support the handshake are served once it completes, so they receive compact payloads;
+ * older clients are served as soon as they join.
+ */
+public class PlayerJoinBroadcaster {
+
+    public static void register() {
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            ServerPlayer player = handler.getPlayer();
+            if (!ServerPlayNetworking.canSend(player, HandshakePayload.ID)) {
+                sendInitialState(player);
+            }
+        });
+        HandshakeHandler.registerListener(PlayerJoinBroadcaster::sendInitialState);
+    }
+
+    private static void sendInitialState(ServerPlayer player) {
+        PlayerCoordinatesBroadcaster.sendSnapshot(player);
+        // Clients that sync by digest ask for the shares they lack instead
+        if (!ClientCapabilities.has(player, ClientCapabilities.Capability.DIGEST_SYNC)) {
+            ShareCoordinatesHandler.replay(player);
+        }
+    }
+}
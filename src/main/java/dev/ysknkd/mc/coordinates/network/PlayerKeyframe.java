@@ -0,0 +1,41 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+
+/**
+ * Full state of one player inside a {@link PlayerCoordinatesBatchPayload}.
+ * The player is referenced by its {@link PlayerDictionaryEntry} id. Coordinates are fixed-point
+ * (see {@link Quantization}) and the dimension is an index into the {@link DimensionTable} sent during
+ * the handshake; {@code world} is only set when the dimension is not in the table.
+ */
+public record PlayerKeyframe(
+    int id,
+    int x,
+    int y,
+    int z,
+    int dimension,
+    String world
+) {
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, PlayerKeyframe> CODEC =
+        StreamCodec.ofMember(PlayerKeyframe::encode, PlayerKeyframe::decode);
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        buf.writeVarInt(id);
+        Quantization.writeSignedVarInt(buf, x);
+        Quantization.writeSignedVarInt(buf, y);
+        Quantization.writeSignedVarInt(buf, z);
+        DimensionTable.write(buf, dimension, world);
+    }
+
+    private static PlayerKeyframe decode(RegistryFriendlyByteBuf buf) {
+        int id = buf.readVarInt();
+        int x = Quantization.readSignedVarInt(buf);
+        int y = Quantization.readSignedVarInt(buf);
+        int z = Quantization.readSignedVarInt(buf);
+        int dimension = DimensionTable.readIndex(buf);
+        String world = dimension == DimensionTable.UNKNOWN ? DimensionTable.readInlineName(buf) : null;
+        return new PlayerKeyframe(id, x, y, z, dimension, world);
+    }
+}
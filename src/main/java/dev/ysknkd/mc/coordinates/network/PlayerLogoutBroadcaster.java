@@ -1,12 +1,17 @@
 package dev.ysknkd.mc.coordinates.network;
 
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.level.ServerPlayer;
 
 /**
  * Broadcasts a player's logout information to other clients when the player logs out.
+ * The logout is sent by the broadcast worker, after any batch still in flight that may contain the player.
  */
 public class PlayerLogoutBroadcaster {
 
@@ -14,7 +19,7 @@ public class PlayerLogoutBroadcaster {
         // Register the logout event
         ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
             ServerPlayer disconnectedPlayer = handler.getPlayer();
-            broadcastLogout(disconnectedPlayer, server);
+            broadcastLogout(disconnectedPlayer);
         });
 
         PayloadTypeRegistry.clientboundPlay().register(PlayerLogoutPayload.ID, PlayerLogoutPayload.CODEC);
@@ -25,13 +30,17 @@ public class PlayerLogoutBroadcaster {
      *
      * @param disconnectedPlayer The player who has logged out.
      */
-    private static void broadcastLogout(ServerPlayer disconnectedPlayer, net.minecraft.server.MinecraftServer server) {
-        PlayerLogoutPayload payload = new PlayerLogoutPayload(disconnectedPlayer.getUUID());
-        server.getPlayerList().getPlayers().forEach(player -> {
-            if (!player.getUUID().equals(disconnectedPlayer.getUUID())
-                    && ServerPlayNetworking.canSend(player, PlayerLogoutPayload.ID)) {
-                ServerPlayNetworking.send(player, payload);
+    private static void broadcastLogout(ServerPlayer disconnectedPlayer) {
+        UUID uuid = disconnectedPlayer.getUUID();
+        // The capabilities are only read on the server thread; the worker gets the resolved players
+        List<ServerPlayer> targets = new ArrayList<>();
+        BitSet slots = ClientCapabilities.players(ClientCapabilities.Capability.LOGOUT);
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            ServerPlayer player = ClientCapabilities.player(slot);
+            if (!player.getUUID().equals(uuid)) {
+                targets.add(player);
             }
-        });
+        }
+        PlayerCoordinatesBroadcaster.sendLogout(uuid, targets);
     }
 }
@@ -0,0 +1,50 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+
+/**
+ * Shared buffer holding every player record of one broadcast cycle, encoded exactly once.
+ * Recipient packets are assembled as composites of slices into this buffer, so the bytes
+ * describing a player are produced once no matter how many players receive them.
+ * <p>
+ * The backing buffer is an unpooled heap buffer. Slices and composites share its reference
+ * count and are never released explicitly; the memory is reclaimed by the GC once the last
+ * queued packet referencing it has been written.
+ */
+final class PlayerRecordBuffer {
+
+    private final ByteBuf buffer;
+    private final RegistryFriendlyByteBuf writer;
+
+    PlayerRecordBuffer(RegistryAccess registryAccess) {
+        this.buffer = Unpooled.buffer();
+        this.writer = new RegistryFriendlyByteBuf(buffer, registryAccess);
+    }
+
+    /**
+     * Encodes a record into the shared buffer.
+     *
+     * @param keyframe The record to encode
+     * @return A read-only slice covering the encoded bytes
+     */
+    ByteBuf encode(PlayerKeyframe keyframe) {
+        int start = buffer.writerIndex();
+        PlayerKeyframe.CODEC.encode(writer, keyframe);
+        return buffer.slice(start, buffer.writerIndex() - start).asReadOnly();
+    }
+
+    /**
+     * Joins previously encoded records into one buffer without copying.
+     *
+     * @param records Slices returned by {@link #encode}
+     * @return A composite view over the records, in order
+     */
+    static ByteBuf compose(List<ByteBuf> records) {
+        return Unpooled.wrappedBuffer(records.size(), records.toArray(new ByteBuf[0]));
+    }
+}
@@ -0,0 +1,51 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.VarInt;
+
+/**
+ * Fixed-point helpers shared by the server and the client so both sides quantize positions identically.
+ * Positions are stored in units of 1/16 block, which is finer than anything the HUD can show.
+ */
+public final class Quantization {
+
+    // Number of fixed-point steps per block
+    public static final int SCALE = 16;
+
+    private Quantization() {}
+
+    /**
+     * Converts a block coordinate to fixed-point units.
+     *
+     * @param value Coordinate in blocks
+     * @return Coordinate in 1/{@value #SCALE} block units
+     */
+    public static int quantize(double value) {
+        return (int) Math.round(value * SCALE);
+    }
+
+    /**
+     * Converts fixed-point units back to a block coordinate.
+     *
+     * @param value Coordinate in 1/{@value #SCALE} block units
+     * @return Coordinate in blocks
+     */
+    public static double dequantize(int value) {
+        return (double) value / SCALE;
+    }
+
+    /**
+     * Writes a signed value as a zig-zag encoded VarInt, so small negative values stay small on the wire.
+     */
+    public static void writeSignedVarInt(ByteBuf buf, int value) {
+        VarInt.write(buf, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a value written by {@link #writeSignedVarInt}.
+     */
+    public static int readSignedVarInt(ByteBuf buf) {
+        int raw = VarInt.read(buf);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+}
@@ -0,0 +1,32 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Per-recipient broadcast state: the last state of every player sent to one client.
+ * The client reconstructs exactly the same values, so deltas can be computed against it.
+ */
+final class RecipientState {
+
+    /**
+     * Last sent state of one tracked player, in fixed-point units.
+     */
+    static final class Baseline {
+        int x;
+        int y;
+        int z;
+        String world;
+    }
+
+    final Map<UUID, Baseline> baselines = new HashMap<>();
+    // Names announced to the recipient, by player id
+    final Int2ObjectOpenHashMap<String> announced = new Int2ObjectOpenHashMap<>();
+    final ConnectionBacklog backlog = new ConnectionBacklog();
+    // Update level missed because the per-tick packet budget was exhausted or the connection was congested
+    int pendingLevel;
+    boolean pendingKeyframe;
+}
@@ -0,0 +1,315 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraft.world.scores.Team;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Channels that decide who sees whose position and shares.
+ * A player is in the channel of their scoreboard team (if {@link ServerConfig#isTeamChannels()}) and in
+ * any named group they joined; a player in neither is in the public channel. Two players see each other
+ * when they have a channel in common.
+ * <p>
+ * Each channel keeps a bitset of the {@link ClientCapabilities} slots of its online members, and the
+ * audience of a player is the union of those bitsets over the player's channels, so fan-out is an AND
+ * of the audience with the recipients of a capability. Audiences are cached and replaced, never
+ * modified, when memberships change, so they can be handed to the broadcast worker as they are.
+ * <p>
+ * Memberships are remembered for offline players and stored in the world folder. Only accessed on the
+ * server thread.
+ */
+public final class ShareChannels {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    private static final String FILE_NAME = CoordinatesApp.MOD_ID + "/channels.json";
+    private static final String TEAM_PREFIX = "team:";
+    private static final String GROUP_PREFIX = "group:";
+    private static final int PUBLIC = 0;
+    // How often team memberships are checked, in ticks; there is no event for team changes
+    private static final int TEAM_CHECK_TICKS = 20;
+
+    private static final Object2IntOpenHashMap<String> channelIds = new Object2IntOpenHashMap<>();
+    private static final List<String> channelNames = new ArrayList<>();
+    // Slots of the online members of each channel, by channel id
+    private static final List<BitSet> members = new ArrayList<>();
+    // Channels of every known player, online or not
+    private static final Map<UUID, BitSet> memberships = new HashMap<>();
+    private static final Map<UUID, Integer> slots = new HashMap<>();
+    // Audience of each online player by slot, built when first needed
+    private static final Map<Integer, BitSet> audiences = new HashMap<>();
+
+    private static Path file;
+
+    static {
+        channelIds.defaultReturnValue(-1);
+        channelId("public");
+    }
+
+    private ShareChannels() {
+    }
+
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(ShareChannels::load);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> save());
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> join(handler.getPlayer()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> leave(handler.getPlayer().getUUID()));
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTickCount() % TEAM_CHECK_TICKS == 0) {
+                for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                    refreshTeam(player);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the slots of the online players who see the given player, including the player if online.
+     * The bitset must not be modified.
+     */
+    public static BitSet audience(UUID player) {
+        Integer slot = slots.get(player);
+        if (slot == null) {
+            return union(channelsOf(player));
+        }
+        return audiences.computeIfAbsent(slot, key -> union(channelsOf(player)));
+    }
+
+    /**
+     * @return Whether two players, online or not, have a channel in common
+     */
+    public static boolean canSee(UUID viewer, UUID player) {
+        return channelsOf(viewer).intersects(channelsOf(player));
+    }
+
+    /**
+     * Adds a player to a named group.
+     *
+     * @return false if the player was already in it
+     */
+    public static boolean joinGroup(ServerPlayer player, String group) {
+        int id = channelId(GROUP_PREFIX + group);
+        BitSet channels = memberships.computeIfAbsent(player.getUUID(), uuid -> new BitSet());
+        if (channels.get(id)) {
+            return false;
+        }
+        channels.set(id);
+        changed(player.getUUID());
+        return true;
+    }
+
+    /**
+     * Removes a player from a named group.
+     *
+     * @return false if the player was not in it
+     */
+    public static boolean leaveGroup(ServerPlayer player, String group) {
+        int id = channelIds.getInt(GROUP_PREFIX + group);
+        BitSet channels = memberships.get(player.getUUID());
+        if (id < 0 || channels == null || !channels.get(id)) {
+            return false;
+        }
+        channels.clear(id);
+        changed(player.getUUID());
+        return true;
+    }
+
+    /**
+     * @return The names of the channels a player is in
+     */
+    public static List<String> channelNames(UUID player) {
+        List<String> names = new ArrayList<>();
+        BitSet channels = channelsOf(player);
+        for (int id = channels.nextSetBit(0); id >= 0; id = channels.nextSetBit(id + 1)) {
+            names.add(channelNames.get(id));
+        }
+        return names;
+    }
+
+    /**
+     * Returns the channels a player is in, which is the public channel if there are no others.
+     */
+    private static BitSet channelsOf(UUID player) {
+        BitSet channels = memberships.get(player);
+        if (channels == null || channels.isEmpty()) {
+            BitSet only = new BitSet();
+            only.set(PUBLIC);
+            return only;
+        }
+        return channels;
+    }
+
+    private static BitSet union(BitSet channels) {
+        BitSet audience = new BitSet();
+        for (int id = channels.nextSetBit(0); id >= 0; id = channels.nextSetBit(id + 1)) {
+            audience.or(members.get(id));
+        }
+        return audience;
+    }
+
+    private static int channelId(String name) {
+        int id = channelIds.getInt(name);
+        if (id < 0) {
+            id = channelNames.size();
+            channelIds.put(name, id);
+            channelNames.add(name);
+            members.add(new BitSet());
+        }
+        return id;
+    }
+
+    private static void join(ServerPlayer player) {
+        int slot = ClientCapabilities.slot(player);
+        if (slot < 0) {
+            return;
+        }
+        slots.put(player.getUUID(), slot);
+        refreshTeam(player);
+        setMember(player.getUUID(), slot, true);
+        audiences.clear();
+    }
+
+    private static void leave(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot != null) {
+            setMember(uuid, slot, false);
+            audiences.clear();
+        }
+    }
+
+    private static void setMember(UUID uuid, int slot, boolean member) {
+        BitSet channels = channelsOf(uuid);
+        for (int id = channels.nextSetBit(0); id >= 0; id = channels.nextSetBit(id + 1)) {
+            members.get(id).set(slot, member);
+        }
+    }
+
+    /**
+     * Moves a player to the channel of their current scoreboard team.
+     */
+    private static void refreshTeam(ServerPlayer player) {
+        Team team = ServerConfig.isTeamChannels() ? player.getTeam() : null;
+        int teamId = team != null ? channelId(TEAM_PREFIX + team.getName()) : -1;
+        BitSet channels = memberships.get(player.getUUID());
+        int current = -1;
+        if (channels != null) {
+            for (int id = channels.nextSetBit(0); id >= 0; id = channels.nextSetBit(id + 1)) {
+                if (channelNames.get(id).startsWith(TEAM_PREFIX)) {
+                    current = id;
+                    break;
+                }
+            }
+        }
+        if (current == teamId) {
+            return;
+        }
+        Integer slot = slots.get(player.getUUID());
+        if (slot != null) {
+            setMember(player.getUUID(), slot, false);
+        }
+        channels = memberships.computeIfAbsent(player.getUUID(), uuid -> new BitSet());
+        if (current >= 0) {
+            channels.clear(current);
+        }
+        if (teamId >= 0) {
+            channels.set(teamId);
+        }
+        if (slot != null) {
+            setMember(player.getUUID(), slot, true);
+        }
+        audiences.clear();
+        save();
+    }
+
+    /**
+     * Applies a change to the memberships of an online player.
+     */
+    private static void changed(UUID player) {
+        Integer slot = slots.get(player);
+        if (slot != null) {
+            // Channels were already changed, so rebuild the player's bits in every channel
+            for (BitSet set : members) {
+                set.clear(slot);
+            }
+            setMember(player, slot, true);
+        }
+        audiences.clear();
+        save();
+    }
+
+    private static void load(MinecraftServer server) {
+        memberships.clear();
+        file = server.getWorldPath(LevelResource.ROOT).resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return;
+        }
+        Type type = new TypeToken<Map<UUID, List<String>>>() {}.getType();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<UUID, List<String>> stored = new Gson().fromJson(reader, type);
+            if (stored != null) {
+                for (Map.Entry<UUID, List<String>> entry : stored.entrySet()) {
+                    BitSet channels = new BitSet();
+                    for (String name : entry.getValue()) {
+                        channels.set(channelId(name));
+                    }
+                    memberships.put(entry.getKey(), channels);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("ShareChannels#load error", e);
+        }
+    }
+
+    private static void save() {
+        if (file == null) {
+            return;
+        }
+        Map<UUID, Set<String>> stored = new HashMap<>();
+        for (Map.Entry<UUID, BitSet> entry : memberships.entrySet()) {
+            BitSet channels = entry.getValue();
+            if (!channels.isEmpty()) {
+                Set<String> names = new TreeSet<>();
+                for (int id = channels.nextSetBit(0); id >= 0; id = channels.nextSetBit(id + 1)) {
+                    names.add(channelNames.get(id));
+                }
+                stored.put(entry.getKey(), names);
+            }
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(stored, writer);
+            }
+        } catch (IOException e) {
+            LOGGER.error("ShareChannels#save error", e);
+        }
+    }
+}
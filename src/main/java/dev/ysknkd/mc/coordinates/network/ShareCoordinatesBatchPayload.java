@@ -0,0 +1,195 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Many shares in a single packet, sent by the server to relay every share due on a tick and by the
+ * client to share many waypoints at once. Sent only to peers that registered this channel and
+ * negotiated {@link HandshakePayload#COMPACT_VERSION}; on the server the sender of every entry is
+ * replaced by the player the packet came from.
+ * <p>
+ * Entries are grouped by sender and dimension so those fields are written once per group. Bodies
+ * above {@link #COMPRESSION_THRESHOLD} bytes are deflated when that makes them smaller.
+ * On the server the frame may already be encoded (see {@link #encoded(List)}); in that case the
+ * pre-encoded bytes are copied to every recipient instead of encoding and compressing again.
+ */
+public record ShareCoordinatesBatchPayload(
+        List<CompactShareCoordinatesPayload> shares,
+        ByteBuf encodedFrame
+) implements CustomPacketPayload {
+
+    // Most shares accepted in a single batch
+    public static final int MAX_SHARES = 1024;
+    // Bodies larger than this many bytes are compressed
+    private static final int COMPRESSION_THRESHOLD = 512;
+    // Largest body accepted after decompression
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    public static final CustomPacketPayload.Type<ShareCoordinatesBatchPayload> ID =
+            new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "share_coordinates_batch"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, ShareCoordinatesBatchPayload> CODEC =
+            StreamCodec.ofMember(ShareCoordinatesBatchPayload::encode, ShareCoordinatesBatchPayload::decode);
+
+    public ShareCoordinatesBatchPayload(List<CompactShareCoordinatesPayload> shares) {
+        this(shares, null);
+    }
+
+    /**
+     * Creates a batch that is encoded and compressed once, for sending the same batch to many peers.
+     */
+    public static ShareCoordinatesBatchPayload encoded(List<CompactShareCoordinatesPayload> shares) {
+        FriendlyByteBuf frame = new FriendlyByteBuf(Unpooled.buffer());
+        writeFrame(frame, shares);
+        return new ShareCoordinatesBatchPayload(shares, frame.asReadOnly());
+    }
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        if (encodedFrame != null) {
+            // Copy without touching the reader index so the same frame can be written to many channels
+            buf.writeBytes(encodedFrame, encodedFrame.readerIndex(), encodedFrame.readableBytes());
+        } else {
+            writeFrame(buf, shares);
+        }
+    }
+
+    private static ShareCoordinatesBatchPayload decode(RegistryFriendlyByteBuf buf) {
+        boolean compressed = buf.readBoolean();
+        if (!compressed) {
+            return new ShareCoordinatesBatchPayload(readBody(buf));
+        }
+        int length = buf.readVarInt();
+        if (length < 0 || length > MAX_BODY_SIZE) {
+            throw new DecoderException("Share batch too large: " + length + " bytes");
+        }
+        byte[] body = inflate(buf.readByteArray(MAX_BODY_SIZE), length);
+        return new ShareCoordinatesBatchPayload(readBody(new FriendlyByteBuf(Unpooled.wrappedBuffer(body))));
+    }
+
+    private static void writeFrame(FriendlyByteBuf out, List<CompactShareCoordinatesPayload> shares) {
+        FriendlyByteBuf body = new FriendlyByteBuf(Unpooled.buffer());
+        writeBody(body, shares);
+        int length = body.readableBytes();
+        if (length > COMPRESSION_THRESHOLD) {
+            byte[] compressed = deflate(body);
+            if (compressed.length < length) {
+                out.writeBoolean(true);
+                out.writeVarInt(length);
+                out.writeByteArray(compressed);
+                return;
+            }
+        }
+        out.writeBoolean(false);
+        out.writeBytes(body);
+    }
+
+    private record Header(UUID sender, int dimension, String world) {
+    }
+
+    private static void writeBody(FriendlyByteBuf buf, List<CompactShareCoordinatesPayload> shares) {
+        Map<Header, List<CompactShareCoordinatesPayload>> groups = new LinkedHashMap<>();
+        for (CompactShareCoordinatesPayload share : shares) {
+            groups.computeIfAbsent(new Header(share.sender(), share.dimension(), share.world()), header -> new ArrayList<>())
+                    .add(share);
+        }
+        buf.writeVarInt(groups.size());
+        for (Map.Entry<Header, List<CompactShareCoordinatesPayload>> group : groups.entrySet()) {
+            Header header = group.getKey();
+            buf.writeUUID(header.sender());
+            DimensionTable.write(buf, header.dimension(), header.world());
+            buf.writeVarInt(group.getValue().size());
+            for (CompactShareCoordinatesPayload share : group.getValue()) {
+                buf.writeUUID(share.uuid());
+                Quantization.writeSignedVarInt(buf, share.x());
+                Quantization.writeSignedVarInt(buf, share.y());
+                Quantization.writeSignedVarInt(buf, share.z());
+                buf.writeUtf(share.description() != null ? share.description() : "");
+                buf.writeBoolean(share.pinned());
+                buf.writeVarInt(share.icon().ordinal());
+            }
+        }
+    }
+
+    private static List<CompactShareCoordinatesPayload> readBody(FriendlyByteBuf buf) {
+        int groupCount = buf.readVarInt();
+        List<CompactShareCoordinatesPayload> shares = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            UUID sender = buf.readUUID();
+            int dimension = DimensionTable.readIndex(buf);
+            String world = dimension == DimensionTable.UNKNOWN ? DimensionTable.readInlineName(buf) : null;
+            int count = buf.readVarInt();
+            if (count < 0 || shares.size() + count > MAX_SHARES) {
+                throw new DecoderException("Too many shares in batch");
+            }
+            for (int i = 0; i < count; i++) {
+                UUID uuid = buf.readUUID();
+                int x = Quantization.readSignedVarInt(buf);
+                int y = Quantization.readSignedVarInt(buf);
+                int z = Quantization.readSignedVarInt(buf);
+                String description = buf.readUtf(ShareCoordinatesPayload.MAX_DESCRIPTION_LENGTH);
+                boolean pinned = buf.readBoolean();
+                WaypointIcon icon = WaypointIcon.fromOrdinal(buf.readVarInt());
+                shares.add(new CompactShareCoordinatesPayload(sender, uuid, x, y, z, description, dimension, world, pinned, icon));
+            }
+        }
+        return shares;
+    }
+
+    private static byte[] deflate(ByteBuf body) {
+        byte[] input = new byte[body.readableBytes()];
+        body.getBytes(body.readerIndex(), input);
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] body = new byte[length];
+            int read = inflater.inflate(body);
+            if (read != length || !inflater.finished()) {
+                throw new DecoderException("Share batch length mismatch");
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new DecoderException("Malformed share batch", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
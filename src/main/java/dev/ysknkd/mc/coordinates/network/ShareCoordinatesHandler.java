@@ -1,34 +1,468 @@
 package dev.ysknkd.mc.coordinates.network;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import dev.ysknkd.mc.coordinates.store.SharedWaypointStore;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.Context;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.PlayPayloadHandler;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Relays shared waypoints to the other players.
+ * Shares are not sent on arrival: repeated shares of the same waypoint by the same sender within the
+ * coalescing window collapse into the latest one, a share whose content did not change since it was
+ * last relayed is dropped, and everything due on a tick goes out as one batch per recipient.
+ * Incoming shares are rate limited per player; see {@link ServerConfig#getSharePolicy()}. Shares sent in
+ * batches have a separate, larger budget, so sharing every waypoint at once does not trip the limit of single shares.
+ * Shares only reach the players who share a channel with the sender (see {@link ShareChannels}).
+ * Relayed shares are kept in the {@link SharedWaypointStore} for players who join later; a share that
+ * only edits fields of the stored one reaches clients that support it as a {@link ShareCoordinatesPatchPayload},
+ * with the other patches due on the same tick in a {@link ShareCoordinatesPatchBatchPayload}.
+ * <p>
+ * All state is only accessed on the server thread.
+ */
 public class ShareCoordinatesHandler implements PlayPayloadHandler<ShareCoordinatesPayload> {
-    
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    // Number of (sender, waypoint) content hashes kept to detect unchanged re-shares
+    private static final int CONTENT_HASH_LIMIT = 4096;
+
+    private record ShareKey(UUID sender, UUID waypoint) {
+    }
+
+    private static final class DueShares {
+        final List<ShareCoordinatesPayload> shares = new ArrayList<>();
+        // Patch against what was relayed before, for each share, or null to send it in full
+        final List<ShareCoordinatesPatchPayload> patches = new ArrayList<>();
+    }
+
+    private static final class PendingShare {
+        ShareCoordinatesPayload payload;
+        final int firstTick;
+
+        PendingShare(ShareCoordinatesPayload payload, int firstTick) {
+            this.payload = payload;
+            this.firstTick = firstTick;
+        }
+    }
+
+    // Per-player rate limit of incoming shares
+    private static final Map<UUID, TokenBucket> buckets = new HashMap<>();
+    // Per-player rate limit of incoming batched shares
+    private static final Map<UUID, TokenBucket> bulkBuckets = new HashMap<>();
+    // Shares waiting for their coalescing window to end, oldest first
+    private static final Map<ShareKey, PendingShare> pending = new LinkedHashMap<>();
+    // Content hash of the last relayed share of each (sender, waypoint)
+    private static final Map<ShareKey, Long> contentHashes = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ShareKey, Long> eldest) {
+            return size() > CONTENT_HASH_LIMIT;
+        }
+    };
+
     public static void register() {
         PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesPayload.ID, ShareCoordinatesPayload.CODEC);
         PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPayload.ID, ShareCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(CompactShareCoordinatesPayload.ID, CompactShareCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(CompactShareCoordinatesPayload.ID, CompactShareCoordinatesPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesBatchPayload.ID, ShareCoordinatesBatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesBatchPayload.ID, ShareCoordinatesBatchPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(ShareCoordinatesPatchPayload.ID, ShareCoordinatesPatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPatchPayload.ID, ShareCoordinatesPatchPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(ShareCoordinatesPatchBatchPayload.ID, ShareCoordinatesPatchBatchPayload.CODEC);
 
         ServerPlayNetworking.registerGlobalReceiver(ShareCoordinatesPayload.ID, new ShareCoordinatesHandler());
+        ServerPlayNetworking.registerGlobalReceiver(CompactShareCoordinatesPayload.ID, (payload, context) ->
+                relay(payload.toShare(HandshakeHandler.getDimensions()), context));
+        ServerPlayNetworking.registerGlobalReceiver(ShareCoordinatesBatchPayload.ID, ShareCoordinatesHandler::relayBatch);
+        ServerPlayNetworking.registerGlobalReceiver(ShareCoordinatesPatchPayload.ID, ShareCoordinatesHandler::relayPatch);
+        ServerTickEvents.END_SERVER_TICK.register(ShareCoordinatesHandler::flush);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            buckets.remove(handler.getPlayer().getUUID());
+            bulkBuckets.remove(handler.getPlayer().getUUID());
+        });
     }
 
     @Override
     public void receive(ShareCoordinatesPayload payload, Context context) {
+        relay(payload, context);
+    }
+
+    private static void relay(ShareCoordinatesPayload payload, Context context) {
         ServerPlayer senderPlayer = context.player();
+        MinecraftServer server = context.server();
 
-        context.server().execute(() -> {
-            ShareCoordinatesPayload outgoing = new ShareCoordinatesPayload(senderPlayer.getUUID(), payload.uuid(), payload.x(),
-                    payload.y(), payload.z(), payload.description(), payload.world(), payload.pinned(), payload.icon());
+        server.execute(() -> {
+            if (allow(senderPlayer, server.getTickCount())) {
+                enqueue(payload, senderPlayer, server.getTickCount());
+            }
+        });
+    }
+
+    /**
+     * Relays many shares sent at once. Each share counts against the bulk rate limit; the rest of the
+     * batch is dropped once the sender runs out of tokens.
+     */
+    private static void relayBatch(ShareCoordinatesBatchPayload payload, Context context) {
+        ServerPlayer senderPlayer = context.player();
+        MinecraftServer server = context.server();
 
-            for (ServerPlayer target : context.server().getPlayerList().getPlayers()) {
-                if (!target.getUUID().equals(senderPlayer.getUUID())
-                        && ServerPlayNetworking.canSend(target, ShareCoordinatesPayload.ID)) {
-                    ServerPlayNetworking.send(target, outgoing);
+        server.execute(() -> {
+            int tick = server.getTickCount();
+            DimensionTable dimensions = HandshakeHandler.getDimensions();
+            List<CompactShareCoordinatesPayload> shares = payload.shares();
+            int allowed = allowBulk(senderPlayer, tick, shares.size());
+            for (int i = 0; i < allowed; i++) {
+                enqueue(shares.get(i).toShare(dimensions), senderPlayer, tick);
+            }
+        });
+    }
+
+    /**
+     * Relays an edit of a waypoint the sender shared before. The patch is applied to the latest share of
+     * the waypoint and relayed like a full share, so it is coalesced and stored the same way. If the
+     * server does not hold the waypoint, for instance because it was evicted, the sender is asked to
+     * share it again in full.
+     */
+    private static void relayPatch(ShareCoordinatesPatchPayload payload, Context context) {
+        ServerPlayer senderPlayer = context.player();
+        MinecraftServer server = context.server();
+
+        server.execute(() -> {
+            int tick = server.getTickCount();
+            if (!allow(senderPlayer, tick)) {
+                return;
+            }
+            PendingShare share = pending.get(new ShareKey(senderPlayer.getUUID(), payload.uuid()));
+            ShareCoordinatesPayload base = share != null ? share.payload : SharedWaypointStore.get(payload.uuid());
+            if (base == null) {
+                if (ServerPlayNetworking.canSend(senderPlayer, WaypointRequestPayload.ID)) {
+                    ServerPlayNetworking.send(senderPlayer, new WaypointRequestPayload(List.of(payload.uuid())));
+                } else {
+                    LOGGER.debug("Ignoring a patch from {} for an unknown waypoint", senderPlayer.getScoreboardName());
                 }
+                return;
+            }
+            if (!base.sender().equals(senderPlayer.getUUID())) {
+                LOGGER.debug("Ignoring a patch from {} for a waypoint owned by another player", senderPlayer.getScoreboardName());
+                return;
             }
+            enqueue(payload.apply(base), senderPlayer, tick);
         });
     }
+
+    private static void enqueue(ShareCoordinatesPayload payload, ServerPlayer senderPlayer, int tick) {
+        ShareCoordinatesPayload outgoing = new ShareCoordinatesPayload(senderPlayer.getUUID(), payload.uuid(), payload.x(),
+                payload.y(), payload.z(), payload.description(), payload.world(), payload.pinned(), payload.icon());
+        ShareKey key = new ShareKey(outgoing.sender(), outgoing.uuid());
+        PendingShare share = pending.get(key);
+        if (share == null) {
+            pending.put(key, new PendingShare(outgoing, tick));
+        } else {
+            // The window keeps its start, so a waypoint toggled continuously is still relayed regularly
+            share.payload = outgoing;
+        }
+    }
+
+    /**
+     * Applies the per-player rate limit and the configured policy to an incoming share.
+     *
+     * @return true if the share should be relayed
+     */
+    private static boolean allow(ServerPlayer sender, int tick) {
+        int burst = ServerConfig.getShareBurst();
+        TokenBucket bucket = buckets.computeIfAbsent(sender.getUUID(), uuid -> new TokenBucket(burst, tick));
+        if (bucket.tryConsume(tick, burst, ServerConfig.getSharesPerSecond() / 20.0)) {
+            return true;
+        }
+        BroadcastMetrics.recordShareRejected();
+        // Warn once per run of rejected shares rather than for each of them
+        boolean warn = bucket.startLimiting();
+        switch (ServerConfig.getSharePolicy()) {
+            case KICK -> {
+                LOGGER.warn("Disconnecting {} for sending shared coordinates too fast", sender.getScoreboardName());
+                sender.connection.disconnect(Component.translatable(CoordinatesApp.MOD_ID + ".disconnect.share_rate_limit"));
+                return false;
+            }
+            case LOG -> {
+                if (warn) {
+                    LOGGER.warn("{} is sending shared coordinates faster than the configured limit", sender.getScoreboardName());
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Applies the per-player bulk rate limit to a batch of shares. Unlike single shares, a batch never
+     * gets its sender disconnected: its size is already bounded, and an honest client sends large ones
+     * when sharing every waypoint at once.
+     *
+     * @return The number of shares of the batch to relay, from its start
+     */
+    private static int allowBulk(ServerPlayer sender, int tick, int count) {
+        int burst = ServerConfig.getBulkShareBurst();
+        TokenBucket bucket = bulkBuckets.computeIfAbsent(sender.getUUID(), uuid -> new TokenBucket(burst, tick));
+        int allowed = bucket.tryConsume(tick, burst, ServerConfig.getBulkSharesPerSecond() / 20.0, count);
+        if (allowed == count) {
+            return count;
+        }
+        for (int i = allowed; i < count; i++) {
+            BroadcastMetrics.recordShareRejected();
+        }
+        // Warn once per run of rejected batches rather than for each of them
+        boolean warn = bucket.startLimiting();
+        if (ServerConfig.getSharePolicy() == ServerConfig.SharePolicy.LOG) {
+            if (warn) {
+                LOGGER.warn("{} is sending batched shared coordinates faster than the configured limit", sender.getScoreboardName());
+            }
+            return count;
+        }
+        if (warn) {
+            LOGGER.warn("Dropping {} of {} batched shares from {} over the configured limit",
+                    count - allowed, count, sender.getScoreboardName());
+        }
+        return allowed;
+    }
+
+    /**
+     * Relays the shares whose coalescing window ended, in one batch per recipient.
+     */
+    private static void flush(MinecraftServer server) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int tick = server.getTickCount();
+        int window = ServerConfig.getShareCoalesceTicks();
+        Map<BitSet, DueShares> due = new LinkedHashMap<>();
+        Iterator<Map.Entry<ShareKey, PendingShare>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ShareKey, PendingShare> entry = iterator.next();
+            if (tick - entry.getValue().firstTick < window) {
+                // Later entries started later
+                break;
+            }
+            iterator.remove();
+            ShareCoordinatesPayload share = entry.getValue().payload;
+            ShareCoordinatesPayload stored = SharedWaypointStore.get(share.uuid());
+            if (stored != null && !stored.sender().equals(share.sender())) {
+                // Waypoint UUIDs are only ever reused by the player who shared them first
+                LOGGER.debug("Ignoring a share of a waypoint owned by another player: {}", share.uuid());
+                continue;
+            }
+            long hash = contentHash(share);
+            Long previous = contentHashes.remove(entry.getKey());
+            contentHashes.put(entry.getKey(), hash);
+            // An unchanged share of a waypoint the store has since evicted is stored and relayed again
+            if (previous != null && previous == hash && stored != null) {
+                continue;
+            }
+            ShareCoordinatesPatchPayload patch = stored != null ? ShareCoordinatesPatchPayload.diff(stored, share) : null;
+            SharedWaypointStore.put(share);
+            // Shares whose senders have the same audience go out together
+            DueShares group = due.computeIfAbsent(ShareChannels.audience(share.sender()), audience -> new DueShares());
+            group.shares.add(share);
+            group.patches.add(patch);
+        }
+        for (Map.Entry<BitSet, DueShares> group : due.entrySet()) {
+            fanOut(group.getValue().shares, group.getValue().patches, group.getKey());
+        }
+    }
+
+    /**
+     * Sends shares to the players in an audience (see {@link ShareChannels}).
+     */
+    private static void fanOut(List<ShareCoordinatesPayload> shares, List<ShareCoordinatesPatchPayload> patches, BitSet audience) {
+        DimensionTable dimensions = HandshakeHandler.getDimensions();
+        List<CompactShareCoordinatesPayload> compact = new ArrayList<>(shares.size());
+        // The shares that recipients of patches still need in full
+        List<CompactShareCoordinatesPayload> unpatched = new ArrayList<>(shares.size());
+        List<ShareCoordinatesPatchPayload> edits = new ArrayList<>();
+        for (int i = 0; i < shares.size(); i++) {
+            CompactShareCoordinatesPayload share = CompactShareCoordinatesPayload.of(shares.get(i), dimensions);
+            compact.add(share);
+            if (patches.get(i) != null) {
+                edits.add(patches.get(i));
+            } else {
+                unpatched.add(share);
+            }
+        }
+        // Encoded and compressed once for every recipient that gets all of them
+        List<ShareCoordinatesBatchPayload> batches = shareBatches(compact, true);
+        List<ShareCoordinatesBatchPayload> unpatchedBatches = edits.isEmpty() ? batches : shareBatches(unpatched, true);
+        List<ShareCoordinatesPatchBatchPayload> editBatches = patchBatches(edits);
+
+        BitSet targets = within(ClientCapabilities.Capability.SHARE_BATCH, audience);
+        for (int slot = targets.nextSetBit(0); slot >= 0; slot = targets.nextSetBit(slot + 1)) {
+            ServerPlayer target = ClientCapabilities.player(slot);
+            boolean patched = ClientCapabilities.has(target, ClientCapabilities.Capability.SHARE_PATCH);
+            List<CompactShareCoordinatesPayload> full = patched ? unpatched : compact;
+            List<CompactShareCoordinatesPayload> others = othersOnly(full, CompactShareCoordinatesPayload::sender, target.getUUID());
+            List<ShareCoordinatesBatchPayload> fullBatches = patched ? unpatchedBatches : batches;
+            for (ShareCoordinatesBatchPayload batch : others == full ? fullBatches : shareBatches(others, false)) {
+                ServerPlayNetworking.send(target, batch);
+            }
+            if (patched && !edits.isEmpty()) {
+                List<ShareCoordinatesPatchPayload> otherEdits = othersOnly(edits, ShareCoordinatesPatchPayload::sender, target.getUUID());
+                for (ShareCoordinatesPatchBatchPayload editBatch : otherEdits == edits ? editBatches : patchBatches(otherEdits)) {
+                    ServerPlayNetworking.send(target, editBatch);
+                }
+            }
+        }
+        targets = within(ClientCapabilities.Capability.COMPACT_SHARE, audience);
+        for (int slot = targets.nextSetBit(0); slot >= 0; slot = targets.nextSetBit(slot + 1)) {
+            ServerPlayer target = ClientCapabilities.player(slot);
+            for (CompactShareCoordinatesPayload share : compact) {
+                if (!share.sender().equals(target.getUUID())) {
+                    ServerPlayNetworking.send(target, share);
+                }
+            }
+        }
+        targets = within(ClientCapabilities.Capability.LEGACY_SHARE, audience);
+        for (int slot = targets.nextSetBit(0); slot >= 0; slot = targets.nextSetBit(slot + 1)) {
+            ServerPlayer target = ClientCapabilities.player(slot);
+            for (ShareCoordinatesPayload share : shares) {
+                if (!share.sender().equals(target.getUUID())) {
+                    ServerPlayNetworking.send(target, share);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The slots of the players in an audience with a capability
+     */
+    private static BitSet within(ClientCapabilities.Capability capability, BitSet audience) {
+        BitSet targets = (BitSet) ClientCapabilities.players(capability).clone();
+        targets.and(audience);
+        return targets;
+    }
+
+    /**
+     * Splits shares into batches of at most {@link ShareCoordinatesBatchPayload#MAX_SHARES}.
+     *
+     * @param encode Whether to encode each batch once, for sending it to many players
+     */
+    static List<ShareCoordinatesBatchPayload> shareBatches(List<CompactShareCoordinatesPayload> shares, boolean encode) {
+        List<ShareCoordinatesBatchPayload> batches = new ArrayList<>();
+        for (int start = 0; start < shares.size(); start += ShareCoordinatesBatchPayload.MAX_SHARES) {
+            List<CompactShareCoordinatesPayload> chunk = List.copyOf(
+                    shares.subList(start, Math.min(start + ShareCoordinatesBatchPayload.MAX_SHARES, shares.size())));
+            batches.add(encode ? ShareCoordinatesBatchPayload.encoded(chunk) : new ShareCoordinatesBatchPayload(chunk));
+        }
+        return batches;
+    }
+
+    /**
+     * Splits patches into batches of at most {@link ShareCoordinatesPatchBatchPayload#MAX_PATCHES}.
+     */
+    private static List<ShareCoordinatesPatchBatchPayload> patchBatches(List<ShareCoordinatesPatchPayload> patches) {
+        List<ShareCoordinatesPatchBatchPayload> batches = new ArrayList<>();
+        for (int start = 0; start < patches.size(); start += ShareCoordinatesPatchBatchPayload.MAX_PATCHES) {
+            batches.add(new ShareCoordinatesPatchBatchPayload(List.copyOf(
+                    patches.subList(start, Math.min(start + ShareCoordinatesPatchBatchPayload.MAX_PATCHES, patches.size())))));
+        }
+        return batches;
+    }
+
+    /**
+     * Returns the shares or patches not sent by the given player; the same list if there are none to remove.
+     */
+    private static <T> List<T> othersOnly(List<T> shares, Function<T, UUID> senderOf, UUID player) {
+        List<T> others = null;
+        for (int i = 0; i < shares.size(); i++) {
+            T share = shares.get(i);
+            if (senderOf.apply(share).equals(player)) {
+                if (others == null) {
+                    others = new ArrayList<>(shares.subList(0, i));
+                }
+            } else if (others != null) {
+                others.add(share);
+            }
+        }
+        return others != null ? others : shares;
+    }
+
+    /**
+     * Hashes the shared content of a share, excluding who shared which waypoint.
+     */
+    private static long contentHash(ShareCoordinatesPayload share) {
+        long hash = Double.doubleToLongBits(share.x());
+        hash = hash * 31 + Double.doubleToLongBits(share.y());
+        hash = hash * 31 + Double.doubleToLongBits(share.z());
+        hash = hash * 31 + String.valueOf(share.description()).hashCode();
+        hash = hash * 31 + String.valueOf(share.world()).hashCode();
+        hash = hash * 31 + (share.pinned() ? 1 : 0);
+        hash = hash * 31 + String.valueOf(share.icon()).hashCode();
+        return hash;
+    }
+
+    /**
+     * Sends a player who just joined the waypoints shared before, except their own, including those
+     * shared while they were offline. Clients that support batches receive them in as few packets as
+     * possible. Must be called on the server thread.
+     *
+     * @param target The player who joined
+     */
+    public static void replay(ServerPlayer target) {
+        send(target, sharedWith(target.getUUID()));
+    }
+
+    /**
+     * @return The stored shares a player may see: those of other players they share a channel with
+     */
+    static List<ShareCoordinatesPayload> sharedWith(UUID player) {
+        List<ShareCoordinatesPayload> shares = SharedWaypointStore.sharedWith(player);
+        shares.removeIf(share -> !ShareChannels.canSee(player, share.sender()));
+        return shares;
+    }
+
+    /**
+     * Sends shares to a single player in the best form the player supports.
+     */
+    static void send(ServerPlayer target, List<ShareCoordinatesPayload> shares) {
+        if (shares.isEmpty()) {
+            return;
+        }
+        DimensionTable dimensions = HandshakeHandler.getDimensions();
+        if (ClientCapabilities.has(target, ClientCapabilities.Capability.SHARE_BATCH)) {
+            List<CompactShareCoordinatesPayload> compact = new ArrayList<>(shares.size());
+            for (ShareCoordinatesPayload share : shares) {
+                compact.add(CompactShareCoordinatesPayload.of(share, dimensions));
+            }
+            for (ShareCoordinatesBatchPayload batch : shareBatches(compact, false)) {
+                ServerPlayNetworking.send(target, batch);
+            }
+        } else if (ClientCapabilities.has(target, ClientCapabilities.Capability.COMPACT_SHARE)) {
+            for (ShareCoordinatesPayload share : shares) {
+                ServerPlayNetworking.send(target, CompactShareCoordinatesPayload.of(share, dimensions));
+            }
+        } else if (ClientCapabilities.has(target, ClientCapabilities.Capability.LEGACY_SHARE)) {
+            for (ShareCoordinatesPayload share : shares) {
+                ServerPlayNetworking.send(target, share);
+            }
+        }
+    }
 }
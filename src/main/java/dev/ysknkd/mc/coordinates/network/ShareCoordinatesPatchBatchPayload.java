@@ -0,0 +1,33 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Many {@link ShareCoordinatesPatchPayload patches} in a single packet, sent by the server to relay
+ * every patch due on a tick in one packet per recipient.
+ */
+public record ShareCoordinatesPatchBatchPayload(List<ShareCoordinatesPatchPayload> patches) implements CustomPacketPayload {
+
+    // Most patches accepted in a single batch
+    public static final int MAX_PATCHES = ShareCoordinatesBatchPayload.MAX_SHARES;
+
+    public static final CustomPacketPayload.Type<ShareCoordinatesPatchBatchPayload> ID =
+            new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "share_coordinates_patch_batch"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, ShareCoordinatesPatchBatchPayload> CODEC = StreamCodec.composite(
+            ShareCoordinatesPatchPayload.CODEC.apply(ByteBufCodecs.list(MAX_PATCHES)), ShareCoordinatesPatchBatchPayload::patches,
+            ShareCoordinatesPatchBatchPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
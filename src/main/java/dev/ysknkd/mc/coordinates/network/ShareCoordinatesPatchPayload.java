@@ -0,0 +1,111 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.Objects;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Changes to a waypoint that was already shared, carrying only the fields listed in {@link #fields()}.
+ * Used in both directions once both peers negotiated {@link HandshakePayload#PATCH_VERSION}; on the
+ * server the sender is replaced by the player the packet came from. The server relays patches in a
+ * {@link ShareCoordinatesPatchBatchPayload}.
+ * <p>
+ * A receiver that does not hold the waypoint asks for it in full with a {@link WaypointRequestPayload}:
+ * the server asks the sender, a client asks the server. A patch for a waypoint held from another
+ * sender is ignored.
+ */
+public record ShareCoordinatesPatchPayload(
+        UUID sender,
+        UUID uuid,
+        int fields,
+        String description,
+        boolean pinned,
+        WaypointIcon icon
+) implements CustomPacketPayload {
+
+    public static final int DESCRIPTION = 1;
+    public static final int PINNED = 1 << 1;
+    public static final int ICON = 1 << 2;
+
+    public static final CustomPacketPayload.Type<ShareCoordinatesPatchPayload> ID =
+            new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "share_coordinates_patch"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, ShareCoordinatesPatchPayload> CODEC =
+            StreamCodec.ofMember(ShareCoordinatesPatchPayload::encode, ShareCoordinatesPatchPayload::decode);
+
+    /**
+     * Returns the patch turning one share of a waypoint into another.
+     *
+     * @return The patch, or null if the shares differ in a field a patch cannot carry or do not differ at all
+     */
+    public static ShareCoordinatesPatchPayload diff(ShareCoordinatesPayload before, ShareCoordinatesPayload after) {
+        if (before.x() != after.x() || before.y() != after.y() || before.z() != after.z()
+                || !Objects.equals(before.world(), after.world())) {
+            return null;
+        }
+        int fields = 0;
+        if (!Objects.equals(before.description(), after.description())) {
+            fields |= DESCRIPTION;
+        }
+        if (before.pinned() != after.pinned()) {
+            fields |= PINNED;
+        }
+        WaypointIcon icon = WaypointIcon.fromName(after.icon());
+        if (WaypointIcon.fromName(before.icon()) != icon) {
+            fields |= ICON;
+        }
+        return fields != 0
+                ? new ShareCoordinatesPatchPayload(after.sender(), after.uuid(), fields, after.description(), after.pinned(), icon)
+                : null;
+    }
+
+    /**
+     * Applies this patch to the current share of the waypoint.
+     */
+    public ShareCoordinatesPayload apply(ShareCoordinatesPayload base) {
+        return new ShareCoordinatesPayload(base.sender(), base.uuid(), base.x(), base.y(), base.z(),
+                has(DESCRIPTION) ? description : base.description(),
+                base.world(),
+                has(PINNED) ? pinned : base.pinned(),
+                has(ICON) ? icon.getName() : base.icon());
+    }
+
+    public boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    private void encode(RegistryFriendlyByteBuf buf) {
+        buf.writeUUID(sender);
+        buf.writeUUID(uuid);
+        buf.writeByte(fields);
+        if (has(DESCRIPTION)) {
+            buf.writeUtf(description != null ? description : "");
+        }
+        if (has(PINNED)) {
+            buf.writeBoolean(pinned);
+        }
+        if (has(ICON)) {
+            buf.writeVarInt(icon.ordinal());
+        }
+    }
+
+    private static ShareCoordinatesPatchPayload decode(RegistryFriendlyByteBuf buf) {
+        UUID sender = buf.readUUID();
+        UUID uuid = buf.readUUID();
+        int fields = buf.readUnsignedByte();
+        String description = (fields & DESCRIPTION) != 0 ? buf.readUtf(ShareCoordinatesPayload.MAX_DESCRIPTION_LENGTH) : null;
+        boolean pinned = (fields & PINNED) != 0 && buf.readBoolean();
+        WaypointIcon icon = (fields & ICON) != 0 ? WaypointIcon.fromOrdinal(buf.readVarInt()) : WaypointIcon.DEFAULT;
+        return new ShareCoordinatesPatchPayload(sender, uuid, fields, description, pinned, icon);
+    }
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
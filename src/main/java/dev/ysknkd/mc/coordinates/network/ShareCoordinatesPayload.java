@@ -20,6 +20,11 @@ public record ShareCoordinatesPayload(
         String icon
 ) implements CustomPacketPayload {
 
+    // Longest strings accepted when decoding; longer ones abort decoding of the packet
+    public static final int MAX_DESCRIPTION_LENGTH = 256;
+    public static final int MAX_WORLD_LENGTH = DimensionTable.MAX_NAME_LENGTH;
+    public static final int MAX_ICON_LENGTH = 64;
+
     public static final CustomPacketPayload.Type<ShareCoordinatesPayload> ID =
             new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "share_coordinates"));
 
@@ -44,10 +49,10 @@ public record ShareCoordinatesPayload(
         double x = buf.readDouble();
         double y = buf.readDouble();
         double z = buf.readDouble();
-        String description = buf.readUtf();
-        String world = buf.readUtf();
+        String description = buf.readUtf(MAX_DESCRIPTION_LENGTH);
+        String world = buf.readUtf(MAX_WORLD_LENGTH);
         boolean pinned = buf.readBoolean();
-        String icon = buf.readUtf();
+        String icon = buf.readUtf(MAX_ICON_LENGTH);
         return new ShareCoordinatesPayload(sender, uuid, x, y, z, description, world, pinned, icon);
     }
 
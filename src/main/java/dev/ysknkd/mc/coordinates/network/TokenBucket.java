@@ -0,0 +1,63 @@
+package dev.ysknkd.mc.coordinates.network;
+
+/**
+ * Token bucket refilled per server tick. A full bucket allows a burst of {@code capacity} messages,
+ * after which messages are accepted at the refill rate.
+ */
+final class TokenBucket {
+
+    private double tokens;
+    private int lastTick;
+    // Whether the last message was rejected
+    private boolean limited;
+
+    TokenBucket(int capacity, int tick) {
+        this.tokens = capacity;
+        this.lastTick = tick;
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @param tick Current server tick
+     * @param capacity Maximum number of tokens
+     * @param perTick Tokens added per tick
+     * @return true if a token was taken
+     */
+    boolean tryConsume(int tick, int capacity, double perTick) {
+        return tryConsume(tick, capacity, perTick, 1) == 1;
+    }
+
+    /**
+     * Takes up to {@code count} tokens, as many as are available.
+     *
+     * @param tick Current server tick
+     * @param capacity Maximum number of tokens
+     * @param perTick Tokens added per tick
+     * @param count Number of tokens wanted
+     * @return The number of tokens taken
+     */
+    int tryConsume(int tick, int capacity, double perTick, int count) {
+        if (tick > lastTick) {
+            tokens = Math.min(capacity, tokens + (tick - lastTick) * perTick);
+            lastTick = tick;
+        }
+        int taken = (int) Math.min(count, Math.floor(tokens));
+        if (taken > 0) {
+            tokens -= taken;
+            limited = false;
+        }
+        return taken;
+    }
+
+    /**
+     * Marks the bucket as limited after a rejected message.
+     *
+     * @return true for the first rejection since the last accepted message
+     */
+    boolean startLimiting() {
+        boolean first = !limited;
+        limited = true;
+        return first;
+    }
+}
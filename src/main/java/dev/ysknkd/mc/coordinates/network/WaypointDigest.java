@@ -0,0 +1,68 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.UUID;
+
+/**
+ * Bucketed digest of a set of shared waypoints, computed identically by the server and the client so
+ * that after a reconnect only the buckets whose digests differ need to be compared entry by entry.
+ * <p>
+ * Each waypoint is identified by its UUID and a version: a stamp of its shared content, so both sides
+ * derive the same version from the same share without it being sent. Positions are stamped in
+ * {@link Quantization} units so a share received in compact form stamps like the original.
+ */
+public final class WaypointDigest {
+
+    // Number of buckets; 32 digests of 8 bytes keep an unchanged sync at a few hundred bytes
+    public static final int BUCKETS = 32;
+
+    private final long[] buckets = new long[BUCKETS];
+
+    /**
+     * Adds a waypoint to the digest.
+     */
+    public void add(UUID uuid, long version) {
+        // Summed rather than XORed so that a pair of identical entries does not cancel out
+        buckets[bucketOf(uuid)] += mix(uuid.getMostSignificantBits() ^ Long.rotateLeft(uuid.getLeastSignificantBits(), 32) ^ version);
+    }
+
+    public long[] buckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * @return The bucket a waypoint falls in
+     */
+    public static int bucketOf(UUID uuid) {
+        return (int) (mix(uuid.getLeastSignificantBits()) >>> 59) & (BUCKETS - 1);
+    }
+
+    /**
+     * @return The version of a share
+     */
+    public static long version(ShareCoordinatesPayload share) {
+        return version(share.x(), share.y(), share.z(), share.description(), share.world(), share.pinned(), share.icon());
+    }
+
+    /**
+     * Computes the version of a waypoint from the fields that are shared.
+     */
+    public static long version(double x, double y, double z, String description, String world, boolean pinned, String icon) {
+        long hash = Quantization.quantize(x);
+        hash = hash * 31 + Quantization.quantize(y);
+        hash = hash * 31 + Quantization.quantize(z);
+        hash = hash * 31 + (description != null ? description : "").hashCode();
+        hash = hash * 31 + (world != null ? world : "").hashCode();
+        hash = hash * 31 + (pinned ? 1 : 0);
+        hash = hash * 31 + WaypointIcon.fromName(icon).ordinal();
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading every input bit over the whole result.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,31 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Sent by the client after a handshake with at least {@link HandshakePayload#SYNC_VERSION}: the
+ * {@link WaypointDigest} of the waypoints it received from other players. The server answers with a
+ * {@link WaypointManifestPayload} for each bucket that differs from its own.
+ */
+public record WaypointDigestPayload(List<Long> buckets) implements CustomPacketPayload {
+
+    public static final CustomPacketPayload.Type<WaypointDigestPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "waypoint_digest"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, WaypointDigestPayload> CODEC = StreamCodec.composite(
+        ByteBufCodecs.LONG.apply(ByteBufCodecs.list(WaypointDigest.BUCKETS)), WaypointDigestPayload::buckets,
+        WaypointDigestPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
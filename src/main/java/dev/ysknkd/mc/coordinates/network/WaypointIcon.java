@@ -0,0 +1,49 @@
+package dev.ysknkd.mc.coordinates.network;
+
+/**
+ * Icons a waypoint can carry, sent on the wire by ordinal.
+ * Constants must only ever be appended so that ordinals stay stable across versions.
+ */
+public enum WaypointIcon {
+    DEFAULT("default"),
+    DESERT("desert"),
+    ICE("ice"),
+    FOREST("forest"),
+    MOUNTAIN("mountain"),
+    PALE("pale"),
+    PLAINS("plains"),
+    RIVER("river");
+
+    private static final WaypointIcon[] VALUES = values();
+
+    private final String name;
+
+    WaypointIcon(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name Icon name stored with the entry
+     * @return The matching icon, or {@link #DEFAULT} for unknown names
+     */
+    public static WaypointIcon fromName(String name) {
+        for (WaypointIcon icon : VALUES) {
+            if (icon.name.equals(name)) {
+                return icon;
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * @param ordinal Ordinal received on the wire
+     * @return The matching icon, or {@link #DEFAULT} for ordinals added by newer versions
+     */
+    public static WaypointIcon fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : DEFAULT;
+    }
+}
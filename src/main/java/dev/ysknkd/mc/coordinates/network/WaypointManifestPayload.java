@@ -0,0 +1,46 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * The UUID and version of every waypoint the server would share with the client in one
+ * {@link WaypointDigest} bucket, sent for the buckets whose digests differ. The client asks for the
+ * entries it lacks or holds another version of with a {@link WaypointRequestPayload}.
+ */
+public record WaypointManifestPayload(int bucket, List<Entry> entries) implements CustomPacketPayload {
+
+    // Most entries accepted in a single bucket
+    public static final int MAX_ENTRIES = 1 << 16;
+
+    public record Entry(UUID uuid, long version) {
+
+        public static final StreamCodec<RegistryFriendlyByteBuf, Entry> CODEC = StreamCodec.composite(
+            UUIDUtil.STREAM_CODEC, Entry::uuid,
+            ByteBufCodecs.LONG, Entry::version,
+            Entry::new
+        );
+    }
+
+    public static final CustomPacketPayload.Type<WaypointManifestPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "waypoint_manifest"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, WaypointManifestPayload> CODEC = StreamCodec.composite(
+        ByteBufCodecs.VAR_INT, WaypointManifestPayload::bucket,
+        Entry.CODEC.apply(ByteBufCodecs.list(MAX_ENTRIES)), WaypointManifestPayload::entries,
+        WaypointManifestPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
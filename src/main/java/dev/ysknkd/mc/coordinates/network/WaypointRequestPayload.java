@@ -0,0 +1,39 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.List;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Asks the server for shared waypoints listed in a {@link WaypointManifestPayload} that the client
+ * lacks or holds another version of, or that a patch it received applies to. The server sends them
+ * like any other share.
+ * <p>
+ * The server sends it the other way to ask the owner of a waypoint to share it again in full, when
+ * it received a patch for a waypoint it does not hold.
+ */
+public record WaypointRequestPayload(List<UUID> uuids) implements CustomPacketPayload {
+
+    // Most waypoints requested in a single packet
+    public static final int MAX_UUIDS = ShareCoordinatesBatchPayload.MAX_SHARES;
+
+    public static final CustomPacketPayload.Type<WaypointRequestPayload> ID =
+        new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath(CoordinatesApp.MOD_ID, "waypoint_request"));
+
+    public static final StreamCodec<RegistryFriendlyByteBuf, WaypointRequestPayload> CODEC = StreamCodec.composite(
+        UUIDUtil.STREAM_CODEC.apply(ByteBufCodecs.list(MAX_UUIDS)), WaypointRequestPayload::uuids,
+        WaypointRequestPayload::new
+    );
+
+    @Override
+    public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+        return ID;
+    }
+}
@@ -0,0 +1,86 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.store.SharedWaypointStore;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking.Context;
+import net.minecraft.server.level.ServerPlayer;
+
+/**
+ * Server side of the shared waypoint sync after joining.
+ * The client sends the {@link WaypointDigest} of the shares it holds; for each bucket that differs
+ * the server lists its entries in a {@link WaypointManifestPayload}, and sends the shares the client
+ * then requests. When nothing changed while the player was away, only the digest crosses the wire.
+ * <p>
+ * All state is only accessed on the server thread.
+ */
+public class WaypointSyncHandler {
+
+    // Players whose digest was answered; a digest is answered once per connection
+    private static final Set<UUID> synced = new HashSet<>();
+
+    public static void register() {
+        PayloadTypeRegistry.serverboundPlay().register(WaypointDigestPayload.ID, WaypointDigestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(WaypointManifestPayload.ID, WaypointManifestPayload.CODEC);
+        PayloadTypeRegistry.serverboundPlay().register(WaypointRequestPayload.ID, WaypointRequestPayload.CODEC);
+        PayloadTypeRegistry.clientboundPlay().register(WaypointRequestPayload.ID, WaypointRequestPayload.CODEC);
+
+        ServerPlayNetworking.registerGlobalReceiver(WaypointDigestPayload.ID, WaypointSyncHandler::receiveDigest);
+        ServerPlayNetworking.registerGlobalReceiver(WaypointRequestPayload.ID, WaypointSyncHandler::receiveRequest);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> synced.remove(handler.getPlayer().getUUID()));
+    }
+
+    private static void receiveDigest(WaypointDigestPayload payload, Context context) {
+        ServerPlayer player = context.player();
+        context.server().execute(() -> {
+            if (!ClientCapabilities.has(player, ClientCapabilities.Capability.DIGEST_SYNC) || !synced.add(player.getUUID())) {
+                return;
+            }
+            List<List<WaypointManifestPayload.Entry>> buckets = new ArrayList<>(WaypointDigest.BUCKETS);
+            for (int i = 0; i < WaypointDigest.BUCKETS; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            WaypointDigest digest = new WaypointDigest();
+            for (ShareCoordinatesPayload share : ShareCoordinatesHandler.sharedWith(player.getUUID())) {
+                long version = WaypointDigest.version(share);
+                digest.add(share.uuid(), version);
+                buckets.get(WaypointDigest.bucketOf(share.uuid())).add(new WaypointManifestPayload.Entry(share.uuid(), version));
+            }
+            long[] expected = digest.buckets();
+            List<Long> actual = payload.buckets();
+            for (int i = 0; i < WaypointDigest.BUCKETS; i++) {
+                // A digest of another size compares unequal everywhere
+                if (actual.size() != WaypointDigest.BUCKETS || actual.get(i) != expected[i]) {
+                    // Sent even when empty, so the client drops entries the server no longer has
+                    ServerPlayNetworking.send(player, new WaypointManifestPayload(i, buckets.get(i)));
+                }
+            }
+        });
+    }
+
+    private static void receiveRequest(WaypointRequestPayload payload, Context context) {
+        ServerPlayer player = context.player();
+        context.server().execute(() -> {
+            // Also sent for patches of waypoints the client does not hold, once it synced
+            if (!synced.contains(player.getUUID())) {
+                return;
+            }
+            List<ShareCoordinatesPayload> shares = new ArrayList<>(payload.uuids().size());
+            for (UUID uuid : payload.uuids()) {
+                ShareCoordinatesPayload share = SharedWaypointStore.get(uuid);
+                if (share != null && !share.sender().equals(player.getUUID())
+                        && ShareChannels.canSee(player.getUUID(), share.sender())) {
+                    shares.add(share);
+                }
+            }
+            ShareCoordinatesHandler.send(player, shares);
+        });
+    }
+}
@@ -0,0 +1,344 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.CoordinatesApp;
+import dev.ysknkd.mc.coordinates.config.ServerConfig;
+import dev.ysknkd.mc.coordinates.network.ShareCoordinatesPayload;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The waypoints shared on this server, kept so that players who were offline when a waypoint was
+ * shared still receive it when they join.
+ * Waypoints are keyed by their UUID and indexed by world and by the player who shared them.
+ * <p>
+ * Changes are appended to a log in the world folder and flushed once per tick; the log is rewritten
+ * with only the live waypoints when it is loaded, when it grows to several times their number, and
+ * when the server stops. A log cut short by a crash loses only its last, incomplete record; a log that
+ * cannot be read to its end is moved aside rather than rewritten, so nothing is lost that it still holds.
+ * <p>
+ * Only accessed on the server thread.
+ */
+public final class SharedWaypointStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatesApp.MOD_ID);
+
+    private static final String LOG_FILE_NAME = CoordinatesApp.MOD_ID + "/shared_waypoints.log";
+    private static final int MAGIC = 0x4D435357;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    // The log is compacted once it holds this many records more than there are waypoints, and at least twice as many
+    private static final int COMPACTION_SLACK = 1024;
+
+    // Every waypoint, least recently shared first
+    private static final Map<UUID, ShareCoordinatesPayload> waypoints = new LinkedHashMap<>();
+    private static final Map<String, Set<UUID>> byWorld = new LinkedHashMap<>();
+    private static final Map<UUID, Set<UUID>> byOwner = new HashMap<>();
+
+    private static Path logFile;
+    private static DataOutputStream log;
+    // Records in the log file, live or not
+    private static int records;
+    private static boolean dirty;
+
+    private SharedWaypointStore() {
+    }
+
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> open(server.getWorldPath(LevelResource.ROOT).resolve(LOG_FILE_NAME)));
+        ServerTickEvents.END_SERVER_TICK.register(server -> flush());
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> close());
+    }
+
+    /**
+     * Adds a shared waypoint, replacing any earlier share of the same waypoint by the same sender.
+     * Forgets the least recently shared waypoints beyond {@link ServerConfig#getMaxSharedWaypoints()}.
+     *
+     * @return false if the waypoint is stored as shared by another player, in which case it is kept
+     */
+    public static boolean put(ShareCoordinatesPayload share) {
+        ShareCoordinatesPayload previous = waypoints.get(share.uuid());
+        if (previous != null && !previous.sender().equals(share.sender())) {
+            return false;
+        }
+        if (previous != null) {
+            waypoints.remove(share.uuid());
+            unindex(previous);
+        }
+        waypoints.put(share.uuid(), share);
+        index(share);
+        append(PUT, share.uuid(), share);
+
+        Iterator<ShareCoordinatesPayload> eldest = waypoints.values().iterator();
+        while (waypoints.size() > ServerConfig.getMaxSharedWaypoints() && eldest.hasNext()) {
+            ShareCoordinatesPayload evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted);
+            append(REMOVE, evicted.uuid(), null);
+        }
+        return true;
+    }
+
+    /**
+     * @return The latest share of a waypoint, or null if it is not stored
+     */
+    public static ShareCoordinatesPayload get(UUID uuid) {
+        return waypoints.get(uuid);
+    }
+
+    /**
+     * Returns the waypoints a player should receive: every waypoint except those they shared themselves,
+     * grouped by world.
+     */
+    public static List<ShareCoordinatesPayload> sharedWith(UUID player) {
+        Set<UUID> own = byOwner.getOrDefault(player, Collections.emptySet());
+        List<ShareCoordinatesPayload> shares = new ArrayList<>(waypoints.size() - own.size());
+        for (Set<UUID> world : byWorld.values()) {
+            for (UUID uuid : world) {
+                if (!own.contains(uuid)) {
+                    shares.add(waypoints.get(uuid));
+                }
+            }
+        }
+        return shares;
+    }
+
+    /**
+     * @return The UUIDs of the waypoints a player shared
+     */
+    public static Set<UUID> ownedBy(UUID player) {
+        return Collections.unmodifiableSet(byOwner.getOrDefault(player, Collections.emptySet()));
+    }
+
+    private static void index(ShareCoordinatesPayload share) {
+        byWorld.computeIfAbsent(String.valueOf(share.world()), world -> new LinkedHashSet<>()).add(share.uuid());
+        byOwner.computeIfAbsent(share.sender(), owner -> new LinkedHashSet<>()).add(share.uuid());
+    }
+
+    private static void unindex(ShareCoordinatesPayload share) {
+        removeFrom(byWorld, String.valueOf(share.world()), share.uuid());
+        removeFrom(byOwner, share.sender(), share.uuid());
+    }
+
+    private static <K> void removeFrom(Map<K, Set<UUID>> index, K key, UUID uuid) {
+        Set<UUID> set = index.get(key);
+        if (set != null && set.remove(uuid) && set.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    static void open(Path file) {
+        waypoints.clear();
+        byWorld.clear();
+        byOwner.clear();
+        logFile = file;
+        if (Files.exists(logFile) && !load() && !setAside()) {
+            // Keep serving from memory without touching the log
+            logFile = null;
+            return;
+        }
+        // Starts every run from a log without dead or partial records
+        compact();
+        LOGGER.info("Loaded {} shared waypoints", waypoints.size());
+    }
+
+    /**
+     * Replays the log into memory.
+     *
+     * @return true if the whole log was read, save for an incomplete last record
+     */
+    private static boolean load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Ignoring {}: unknown format", logFile);
+                return false;
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                if (op == PUT) {
+                    ShareCoordinatesPayload share = readShare(in, uuid);
+                    ShareCoordinatesPayload previous = waypoints.remove(uuid);
+                    if (previous != null) {
+                        unindex(previous);
+                    }
+                    waypoints.put(uuid, share);
+                    index(share);
+                } else if (op == REMOVE) {
+                    ShareCoordinatesPayload previous = waypoints.remove(uuid);
+                    if (previous != null) {
+                        unindex(previous);
+                    }
+                } else {
+                    throw new IOException("Unknown record type " + op);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("{} ends with an incomplete record, which is dropped", logFile);
+        } catch (IOException e) {
+            LOGGER.error("SharedWaypointStore#load error", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves a log that could not be read out of the way, keeping it for inspection.
+     *
+     * @return true if the log was moved
+     */
+    private static boolean setAside() {
+        Path bad = logFile.resolveSibling(logFile.getFileName() + ".bad");
+        for (int i = 1; Files.exists(bad); i++) {
+            bad = logFile.resolveSibling(logFile.getFileName() + ".bad." + i);
+        }
+        try {
+            Files.move(logFile, bad);
+            LOGGER.warn("Moved {} to {}; its waypoints that could not be read are not served", logFile, bad);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("SharedWaypointStore#setAside error", e);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live waypoints and reopens it for appending.
+     */
+    private static void compact() {
+        closeLog();
+        Path temp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(logFile.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                for (ShareCoordinatesPayload share : waypoints.values()) {
+                    writeRecord(out, PUT, share.uuid(), share);
+                }
+            }
+            Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = waypoints.size();
+            log = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(logFile, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            // Keep serving from memory; the waypoints are lost on restart
+            LOGGER.error("SharedWaypointStore#compact error", e);
+        }
+    }
+
+    private static void append(byte op, UUID uuid, ShareCoordinatesPayload share) {
+        if (log == null) {
+            return;
+        }
+        try {
+            writeRecord(log, op, uuid, share);
+            records++;
+            dirty = true;
+        } catch (IOException e) {
+            LOGGER.error("SharedWaypointStore#append error", e);
+            closeLog();
+        }
+    }
+
+    private static void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        if (records > COMPACTION_SLACK + waypoints.size() && records > waypoints.size() * 2) {
+            compact();
+            return;
+        }
+        try {
+            log.flush();
+        } catch (IOException e) {
+            LOGGER.error("SharedWaypointStore#flush error", e);
+            closeLog();
+        }
+    }
+
+    static void close() {
+        if (logFile != null) {
+            compact();
+            closeLog();
+        }
+        waypoints.clear();
+        byWorld.clear();
+        byOwner.clear();
+        logFile = null;
+    }
+
+    private static void closeLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            LOGGER.error("SharedWaypointStore#close error", e);
+        }
+        log = null;
+        dirty = false;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte op, UUID uuid, ShareCoordinatesPayload share) throws IOException {
+        out.writeByte(op);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        if (op == PUT) {
+            out.writeLong(share.sender().getMostSignificantBits());
+            out.writeLong(share.sender().getLeastSignificantBits());
+            out.writeDouble(share.x());
+            out.writeDouble(share.y());
+            out.writeDouble(share.z());
+            out.writeUTF(share.description() != null ? share.description() : "");
+            out.writeUTF(share.world() != null ? share.world() : "");
+            out.writeBoolean(share.pinned());
+            out.writeUTF(share.icon() != null ? share.icon() : "");
+        }
+    }
+
+    private static ShareCoordinatesPayload readShare(DataInputStream in, UUID uuid) throws IOException {
+        UUID sender = new UUID(in.readLong(), in.readLong());
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        String description = in.readUTF();
+        String world = in.readUTF();
+        boolean pinned = in.readBoolean();
+        String icon = in.readUTF();
+        return new ShareCoordinatesPayload(sender, uuid, x, y, z, description, world, pinned, icon);
+    }
+}
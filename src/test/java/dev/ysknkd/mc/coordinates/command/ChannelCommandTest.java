@@ -0,0 +1,47 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommands.literal;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import org.junit.jupiter.api.Test;
+
+class ChannelCommandTest {
+
+    // The client commands as registered in game, with /ml opening the list
+    static CommandDispatcher<FabricClientCommandSource> dispatcher() {
+        CommandDispatcher<FabricClientCommandSource> dispatcher = new CommandDispatcher<>();
+        dispatcher.register(literal("ml").executes(context -> 1));
+        ChannelCommand.register(dispatcher);
+        return dispatcher;
+    }
+
+    // A command the client runs itself; anything else fails to parse and never reaches the server
+    static boolean handledOnClient(CommandDispatcher<FabricClientCommandSource> dispatcher, String command) {
+        ParseResults<FabricClientCommandSource> parse = dispatcher.parse(command, null);
+        return !parse.getReader().canRead() && parse.getExceptions().isEmpty() && parse.getContext().getCommand() != null;
+    }
+
+    @Test
+    void channelCommandsAreForwarded() {
+        CommandDispatcher<FabricClientCommandSource> dispatcher = dispatcher();
+
+        assertTrue(handledOnClient(dispatcher, "ml channel list"));
+        assertTrue(handledOnClient(dispatcher, "ml channel join builders"));
+        assertTrue(handledOnClient(dispatcher, "ml channel leave builders"));
+        assertTrue(handledOnClient(dispatcher, "ml channel"));
+    }
+
+    @Test
+    void listCommandStillOpensTheList() {
+        CommandDispatcher<FabricClientCommandSource> dispatcher = dispatcher();
+
+        assertNotNull(dispatcher.getRoot().getChild("ml").getCommand());
+        assertTrue(handledOnClient(dispatcher, "ml"));
+        assertFalse(handledOnClient(dispatcher, "ml unknown"));
+    }
+}
@@ -0,0 +1,26 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static dev.ysknkd.mc.coordinates.command.ChannelCommandTest.handledOnClient;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mojang.brigadier.CommandDispatcher;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import org.junit.jupiter.api.Test;
+
+class FollowCommandTest {
+
+    @Test
+    void registersUnderItsOwnRoot() {
+        CommandDispatcher<FabricClientCommandSource> dispatcher = ChannelCommandTest.dispatcher();
+        FollowCommand.register(dispatcher);
+
+        assertTrue(handledOnClient(dispatcher, "mlc follow Alex"));
+        assertTrue(handledOnClient(dispatcher, "mlc unfollow"));
+        assertTrue(handledOnClient(dispatcher, "mlc unfollow Alex"));
+        // Nothing new under /ml, whose subcommands belong to the server
+        assertNull(dispatcher.getRoot().getChild("ml").getChild("follow"));
+        assertNull(dispatcher.getRoot().getChild("ml").getChild("unfollow"));
+        assertTrue(handledOnClient(dispatcher, "ml channel list"));
+    }
+}
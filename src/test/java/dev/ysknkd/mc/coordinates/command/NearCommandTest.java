@@ -0,0 +1,26 @@
+package dev.ysknkd.mc.coordinates.command;
+
+import static dev.ysknkd.mc.coordinates.command.ChannelCommandTest.handledOnClient;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mojang.brigadier.CommandDispatcher;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import org.junit.jupiter.api.Test;
+
+class NearCommandTest {
+
+    @Test
+    void registersUnderItsOwnRoot() {
+        CommandDispatcher<FabricClientCommandSource> dispatcher = ChannelCommandTest.dispatcher();
+        NearCommand.register(dispatcher);
+
+        assertTrue(handledOnClient(dispatcher, "mlc near"));
+        assertTrue(handledOnClient(dispatcher, "mlc near 10"));
+        assertFalse(handledOnClient(dispatcher, "mlc near 0"));
+        // Nothing new under /ml, whose subcommands belong to the server
+        assertNull(dispatcher.getRoot().getChild("ml").getChild("near"));
+        assertTrue(handledOnClient(dispatcher, "ml channel list"));
+    }
+}
@@ -0,0 +1,63 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+class CompactShareCoordinatesPayloadTest {
+
+    private static final DimensionTable DIMENSIONS =
+        new DimensionTable(List.of("minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"));
+
+    private static CompactShareCoordinatesPayload roundTrip(CompactShareCoordinatesPayload payload) {
+        RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(Unpooled.buffer(), RegistryAccess.EMPTY);
+        CompactShareCoordinatesPayload.CODEC.encode(buf, payload);
+        CompactShareCoordinatesPayload decoded = CompactShareCoordinatesPayload.CODEC.decode(buf);
+        assertFalse(buf.isReadable());
+        return decoded;
+    }
+
+    @Test
+    void indexedDimensionRoundTrips() {
+        ShareCoordinatesPayload share = new ShareCoordinatesPayload(UUID.randomUUID(), UUID.randomUUID(),
+            120.5, 64.0, -300.25, "Base", "minecraft:the_nether", true, "desert");
+
+        CompactShareCoordinatesPayload compact = CompactShareCoordinatesPayload.of(share, DIMENSIONS);
+
+        assertEquals(1, compact.dimension());
+        assertNull(compact.world());
+        assertEquals(compact, roundTrip(compact));
+        assertEquals(share, roundTrip(compact).toShare(DIMENSIONS));
+    }
+
+    @Test
+    void unknownDimensionIsSentInline() {
+        ShareCoordinatesPayload share = new ShareCoordinatesPayload(UUID.randomUUID(), UUID.randomUUID(),
+            0.0, 0.0, 0.0, "", "custom:void", false, "default");
+
+        CompactShareCoordinatesPayload compact = CompactShareCoordinatesPayload.of(share, DIMENSIONS);
+
+        assertEquals(DimensionTable.UNKNOWN, compact.dimension());
+        assertEquals(share, roundTrip(compact).toShare(DIMENSIONS));
+    }
+
+    @Test
+    void positionsAreQuantized() {
+        ShareCoordinatesPayload share = new ShareCoordinatesPayload(UUID.randomUUID(), UUID.randomUUID(),
+            10.01, -5.49, 3.3, "Mine", "minecraft:overworld", false, "default");
+
+        ShareCoordinatesPayload restored = roundTrip(CompactShareCoordinatesPayload.of(share, DIMENSIONS)).toShare(DIMENSIONS);
+
+        assertEquals(share.x(), restored.x(), 0.5 / Quantization.SCALE);
+        assertEquals(share.y(), restored.y(), 0.5 / Quantization.SCALE);
+        assertEquals(share.z(), restored.z(), 0.5 / Quantization.SCALE);
+    }
+}
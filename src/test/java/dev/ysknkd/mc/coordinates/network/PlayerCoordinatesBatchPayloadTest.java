@@ -0,0 +1,75 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+class PlayerCoordinatesBatchPayloadTest {
+
+    private static RegistryFriendlyByteBuf buffer() {
+        return new RegistryFriendlyByteBuf(Unpooled.buffer(), RegistryAccess.EMPTY);
+    }
+
+    private static PlayerCoordinatesBatchPayload roundTrip(PlayerCoordinatesBatchPayload payload) {
+        RegistryFriendlyByteBuf buf = buffer();
+        PlayerCoordinatesBatchPayload.CODEC.encode(buf, payload);
+        PlayerCoordinatesBatchPayload decoded = PlayerCoordinatesBatchPayload.CODEC.decode(buf);
+        assertFalse(buf.isReadable());
+        return decoded;
+    }
+
+    @Test
+    void roundTripsEntriesKeyframesAndDeltas() {
+        PlayerCoordinatesBatchPayload payload = new PlayerCoordinatesBatchPayload(
+            List.of(new PlayerDictionaryEntry(1, UUID.randomUUID(), "Alex"), new PlayerDictionaryEntry(2, UUID.randomUUID(), "Steve")),
+            List.of(new PlayerKeyframe(1, 1600, -1024, 32, 0, null), new PlayerKeyframe(2, -5, 64, 7, DimensionTable.UNKNOWN, "custom:void")),
+            List.of(new PlayerCoordinatesDelta(1, 3, 0, -3), new PlayerCoordinatesDelta(2, -4096, 1, 4095)));
+
+        assertEquals(payload, roundTrip(payload));
+    }
+
+    @Test
+    void roundTripsEmptyBatch() {
+        PlayerCoordinatesBatchPayload payload = new PlayerCoordinatesBatchPayload(List.of(), List.of(), List.of());
+
+        assertEquals(payload, roundTrip(payload));
+    }
+
+    @Test
+    void preEncodedKeyframesDecodeLikeEncodedOnes() {
+        List<PlayerKeyframe> keyframes = List.of(new PlayerKeyframe(1, 16, 32, 48, 1, null), new PlayerKeyframe(3, -16, 0, 99, 0, null));
+        PlayerRecordBuffer records = new PlayerRecordBuffer(RegistryAccess.EMPTY);
+        List<ByteBuf> encoded = new ArrayList<>();
+        for (PlayerKeyframe keyframe : keyframes) {
+            encoded.add(records.encode(keyframe));
+        }
+        PlayerCoordinatesBatchPayload payload =
+            new PlayerCoordinatesBatchPayload(List.of(), keyframes, List.of(), PlayerRecordBuffer.compose(encoded));
+
+        PlayerCoordinatesBatchPayload decoded = roundTrip(payload);
+
+        assertEquals(keyframes, decoded.keyframes());
+        // The same records can be written again for the next recipient
+        assertEquals(keyframes, roundTrip(payload).keyframes());
+    }
+
+    @Test
+    void rejectsCountsAboveTheLimitBeforeAllocating() {
+        RegistryFriendlyByteBuf buf = buffer();
+        buf.writeVarInt(0);
+        buf.writeVarInt(Integer.MAX_VALUE);
+
+        assertThrows(DecoderException.class, () -> PlayerCoordinatesBatchPayload.CODEC.decode(buf));
+    }
+}
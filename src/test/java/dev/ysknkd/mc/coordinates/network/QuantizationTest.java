@@ -0,0 +1,50 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+class QuantizationTest {
+
+    @Test
+    void quantizesToSixteenthsOfABlock() {
+        assertEquals(0, Quantization.quantize(0.0));
+        assertEquals(16, Quantization.quantize(1.0));
+        assertEquals(-24, Quantization.quantize(-1.5));
+        assertEquals(2, Quantization.quantize(0.1));
+        assertEquals(1.5, Quantization.dequantize(24));
+        assertEquals(-0.0625, Quantization.dequantize(-1));
+    }
+
+    @Test
+    void roundTripIsWithinHalfAStep() {
+        double[] values = {0.03, -0.03, 123.456, -29999984.7, 29999984.2, 64.99};
+        for (double value : values) {
+            double restored = Quantization.dequantize(Quantization.quantize(value));
+            assertEquals(value, restored, 0.5 / Quantization.SCALE);
+        }
+    }
+
+    @Test
+    void signedVarIntRoundTrips() {
+        int[] values = {0, 1, -1, 63, -64, 64, -65, 8191, -8192, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ByteBuf buf = Unpooled.buffer();
+        for (int value : values) {
+            Quantization.writeSignedVarInt(buf, value);
+        }
+        for (int value : values) {
+            assertEquals(value, Quantization.readSignedVarInt(buf));
+        }
+        assertFalse(buf.isReadable());
+    }
+
+    @Test
+    void smallNegativeValuesStaySmall() {
+        ByteBuf buf = Unpooled.buffer();
+        Quantization.writeSignedVarInt(buf, -64);
+        assertEquals(1, buf.readableBytes());
+    }
+}
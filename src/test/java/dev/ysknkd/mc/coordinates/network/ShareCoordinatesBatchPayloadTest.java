@@ -0,0 +1,92 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+class ShareCoordinatesBatchPayloadTest {
+
+    private static RegistryFriendlyByteBuf buffer() {
+        return new RegistryFriendlyByteBuf(Unpooled.buffer(), RegistryAccess.EMPTY);
+    }
+
+    private static List<CompactShareCoordinatesPayload> shares(int count) {
+        UUID[] senders = {UUID.randomUUID(), UUID.randomUUID()};
+        List<CompactShareCoordinatesPayload> shares = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int dimension = i % 3 == 2 ? DimensionTable.UNKNOWN : i % 3;
+            shares.add(new CompactShareCoordinatesPayload(senders[i % 2], UUID.randomUUID(), i * 16, 64 * 16, -i * 16,
+                "Waypoint " + i, dimension, dimension == DimensionTable.UNKNOWN ? "custom:void" : null,
+                i % 2 == 0, WaypointIcon.fromOrdinal(i % WaypointIcon.values().length)));
+        }
+        return shares;
+    }
+
+    private static ShareCoordinatesBatchPayload roundTrip(ShareCoordinatesBatchPayload payload) {
+        RegistryFriendlyByteBuf buf = buffer();
+        ShareCoordinatesBatchPayload.CODEC.encode(buf, payload);
+        ShareCoordinatesBatchPayload decoded = ShareCoordinatesBatchPayload.CODEC.decode(buf);
+        assertFalse(buf.isReadable());
+        return decoded;
+    }
+
+    /**
+     * Decoded shares come out grouped by sender and dimension; compares them regardless of order.
+     */
+    private static void assertSameShares(List<CompactShareCoordinatesPayload> expected, List<CompactShareCoordinatesPayload> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+    }
+
+    @Test
+    void smallBatchRoundTripsUncompressed() {
+        List<CompactShareCoordinatesPayload> shares = shares(3);
+        RegistryFriendlyByteBuf buf = buffer();
+        ShareCoordinatesBatchPayload.CODEC.encode(buf, new ShareCoordinatesBatchPayload(shares));
+
+        assertFalse(buf.getBoolean(buf.readerIndex()));
+        assertSameShares(shares, ShareCoordinatesBatchPayload.CODEC.decode(buf).shares());
+    }
+
+    @Test
+    void largeBatchRoundTripsCompressed() {
+        List<CompactShareCoordinatesPayload> shares = shares(200);
+        RegistryFriendlyByteBuf buf = buffer();
+        ShareCoordinatesBatchPayload.CODEC.encode(buf, new ShareCoordinatesBatchPayload(shares));
+
+        assertTrue(buf.getBoolean(buf.readerIndex()));
+        assertSameShares(shares, ShareCoordinatesBatchPayload.CODEC.decode(buf).shares());
+    }
+
+    @Test
+    void encodedFrameCanBeWrittenMoreThanOnce() {
+        List<CompactShareCoordinatesPayload> shares = shares(200);
+        ShareCoordinatesBatchPayload payload = ShareCoordinatesBatchPayload.encoded(shares);
+
+        assertSameShares(shares, roundTrip(payload).shares());
+        assertSameShares(shares, roundTrip(payload).shares());
+    }
+
+    @Test
+    void rejectsTooManyShares() {
+        RegistryFriendlyByteBuf buf = buffer();
+        buf.writeBoolean(false);
+        buf.writeVarInt(1);
+        buf.writeUUID(UUID.randomUUID());
+        DimensionTable.write(buf, 0, null);
+        buf.writeVarInt(ShareCoordinatesBatchPayload.MAX_SHARES + 1);
+
+        assertThrows(DecoderException.class, () -> ShareCoordinatesBatchPayload.CODEC.decode(buf));
+    }
+}
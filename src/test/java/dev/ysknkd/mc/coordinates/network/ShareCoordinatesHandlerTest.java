@@ -0,0 +1,51 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+class ShareCoordinatesHandlerTest {
+
+    private static List<CompactShareCoordinatesPayload> shares(int count) {
+        UUID sender = UUID.randomUUID();
+        List<CompactShareCoordinatesPayload> shares = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shares.add(new CompactShareCoordinatesPayload(sender, UUID.randomUUID(), i * 16, 64 * 16, -i * 16,
+                "Waypoint " + i, 0, null, false, WaypointIcon.fromOrdinal(0)));
+        }
+        return shares;
+    }
+
+    @Test
+    void shareBatchesStayWithinWhatRecipientsDecode() {
+        int count = ShareCoordinatesBatchPayload.MAX_SHARES * 2 + 10;
+        List<CompactShareCoordinatesPayload> shares = shares(count);
+
+        for (boolean encode : new boolean[]{true, false}) {
+            List<ShareCoordinatesBatchPayload> batches = ShareCoordinatesHandler.shareBatches(shares, encode);
+
+            assertEquals(3, batches.size());
+            List<CompactShareCoordinatesPayload> decoded = new ArrayList<>();
+            for (ShareCoordinatesBatchPayload batch : batches) {
+                RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(Unpooled.buffer(), RegistryAccess.EMPTY);
+                ShareCoordinatesBatchPayload.CODEC.encode(buf, batch);
+                decoded.addAll(ShareCoordinatesBatchPayload.CODEC.decode(buf).shares());
+            }
+            assertEquals(count, decoded.size());
+            assertTrue(decoded.containsAll(shares));
+        }
+    }
+
+    @Test
+    void noSharesMakeNoBatches() {
+        assertTrue(ShareCoordinatesHandler.shareBatches(List.of(), true).isEmpty());
+    }
+}
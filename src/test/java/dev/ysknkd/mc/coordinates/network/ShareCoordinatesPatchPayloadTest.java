@@ -0,0 +1,89 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+class ShareCoordinatesPatchPayloadTest {
+
+    private static final UUID SENDER = UUID.randomUUID();
+    private static final UUID WAYPOINT = UUID.randomUUID();
+    private static final ShareCoordinatesPayload BASE = new ShareCoordinatesPayload(SENDER, WAYPOINT,
+        10.0, 64.0, -20.0, "Village", "minecraft:overworld", false, "default");
+
+    private static RegistryFriendlyByteBuf buffer() {
+        return new RegistryFriendlyByteBuf(Unpooled.buffer(), RegistryAccess.EMPTY);
+    }
+
+    @Test
+    void diffCarriesOnlyChangedFields() {
+        ShareCoordinatesPayload edited = new ShareCoordinatesPayload(SENDER, WAYPOINT,
+            10.0, 64.0, -20.0, "Village (raided)", "minecraft:overworld", false, "default");
+
+        ShareCoordinatesPatchPayload patch = ShareCoordinatesPatchPayload.diff(BASE, edited);
+
+        assertEquals(ShareCoordinatesPatchPayload.DESCRIPTION, patch.fields());
+        assertEquals(edited, patch.apply(BASE));
+    }
+
+    @Test
+    void diffAppliesEveryPatchableField() {
+        ShareCoordinatesPayload edited = new ShareCoordinatesPayload(SENDER, WAYPOINT,
+            10.0, 64.0, -20.0, "Outpost", "minecraft:overworld", true, "mountain");
+
+        ShareCoordinatesPatchPayload patch = ShareCoordinatesPatchPayload.diff(BASE, edited);
+
+        assertTrue(patch.has(ShareCoordinatesPatchPayload.DESCRIPTION));
+        assertTrue(patch.has(ShareCoordinatesPatchPayload.PINNED));
+        assertTrue(patch.has(ShareCoordinatesPatchPayload.ICON));
+        assertEquals(edited, patch.apply(BASE));
+    }
+
+    @Test
+    void noPatchForMovesOrUnchangedShares() {
+        ShareCoordinatesPayload moved = new ShareCoordinatesPayload(SENDER, WAYPOINT,
+            11.0, 64.0, -20.0, "Village", "minecraft:overworld", false, "default");
+        ShareCoordinatesPayload otherWorld = new ShareCoordinatesPayload(SENDER, WAYPOINT,
+            10.0, 64.0, -20.0, "Village", "minecraft:the_nether", false, "default");
+
+        assertNull(ShareCoordinatesPatchPayload.diff(BASE, moved));
+        assertNull(ShareCoordinatesPatchPayload.diff(BASE, otherWorld));
+        assertNull(ShareCoordinatesPatchPayload.diff(BASE, BASE));
+    }
+
+    @Test
+    void patchRoundTrips() {
+        ShareCoordinatesPatchPayload patch = new ShareCoordinatesPatchPayload(SENDER, WAYPOINT,
+            ShareCoordinatesPatchPayload.PINNED | ShareCoordinatesPatchPayload.ICON, null, true, WaypointIcon.RIVER);
+        RegistryFriendlyByteBuf buf = buffer();
+
+        ShareCoordinatesPatchPayload.CODEC.encode(buf, patch);
+
+        assertEquals(patch, ShareCoordinatesPatchPayload.CODEC.decode(buf));
+        assertFalse(buf.isReadable());
+    }
+
+    @Test
+    void patchBatchRoundTrips() {
+        ShareCoordinatesPatchBatchPayload batch = new ShareCoordinatesPatchBatchPayload(List.of(
+            new ShareCoordinatesPatchPayload(SENDER, WAYPOINT, ShareCoordinatesPatchPayload.DESCRIPTION,
+                "Renamed", false, WaypointIcon.DEFAULT),
+            new ShareCoordinatesPatchPayload(UUID.randomUUID(), UUID.randomUUID(), ShareCoordinatesPatchPayload.PINNED,
+                null, true, WaypointIcon.DEFAULT)));
+        RegistryFriendlyByteBuf buf = buffer();
+
+        ShareCoordinatesPatchBatchPayload.CODEC.encode(buf, batch);
+
+        assertEquals(batch, ShareCoordinatesPatchBatchPayload.CODEC.decode(buf));
+        assertFalse(buf.isReadable());
+    }
+}
@@ -0,0 +1,68 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsABurstThenRejects() {
+        TokenBucket bucket = new TokenBucket(3, 0);
+
+        assertTrue(bucket.tryConsume(0, 3, 0.5));
+        assertTrue(bucket.tryConsume(0, 3, 0.5));
+        assertTrue(bucket.tryConsume(0, 3, 0.5));
+        assertFalse(bucket.tryConsume(0, 3, 0.5));
+    }
+
+    @Test
+    void refillsAtTheRatePerTick() {
+        TokenBucket bucket = new TokenBucket(1, 0);
+        assertTrue(bucket.tryConsume(0, 1, 0.25));
+
+        assertFalse(bucket.tryConsume(3, 1, 0.25));
+        assertTrue(bucket.tryConsume(4, 1, 0.25));
+        assertFalse(bucket.tryConsume(4, 1, 0.25));
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 0);
+        assertTrue(bucket.tryConsume(0, 2, 1.0));
+        assertTrue(bucket.tryConsume(0, 2, 1.0));
+
+        // A long pause does not build up more than a full burst
+        assertTrue(bucket.tryConsume(1000, 2, 1.0));
+        assertTrue(bucket.tryConsume(1000, 2, 1.0));
+        assertFalse(bucket.tryConsume(1000, 2, 1.0));
+    }
+
+    @Test
+    void startLimitingReportsOnlyTheFirstRejection() {
+        TokenBucket bucket = new TokenBucket(1, 0);
+        assertTrue(bucket.tryConsume(0, 1, 1.0));
+
+        assertFalse(bucket.tryConsume(0, 1, 1.0));
+        assertTrue(bucket.startLimiting());
+        assertFalse(bucket.tryConsume(0, 1, 1.0));
+        assertFalse(bucket.startLimiting());
+
+        // Accepting a message ends the run of rejections
+        assertTrue(bucket.tryConsume(1, 1, 1.0));
+        assertFalse(bucket.tryConsume(1, 1, 1.0));
+        assertTrue(bucket.startLimiting());
+    }
+
+    @Test
+    void takesAsManyTokensAsAvailable() {
+        TokenBucket bucket = new TokenBucket(10, 0);
+
+        assertEquals(4, bucket.tryConsume(0, 10, 1.0, 4));
+        assertEquals(6, bucket.tryConsume(0, 10, 1.0, 20));
+        assertEquals(0, bucket.tryConsume(0, 10, 1.0, 1));
+        assertEquals(3, bucket.tryConsume(3, 10, 1.0, 5));
+    }
+}
@@ -0,0 +1,93 @@
+package dev.ysknkd.mc.coordinates.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class WaypointDigestTest {
+
+    @Test
+    void digestDoesNotDependOnOrder() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        WaypointDigest first = new WaypointDigest();
+        first.add(a, 1);
+        first.add(b, 2);
+        first.add(c, 3);
+        WaypointDigest second = new WaypointDigest();
+        second.add(c, 3);
+        second.add(a, 1);
+        second.add(b, 2);
+
+        assertArrayEquals(first.buckets(), second.buckets());
+    }
+
+    @Test
+    void changedVersionOnlyChangesItsBucket() {
+        UUID changed = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        WaypointDigest before = new WaypointDigest();
+        before.add(changed, 1);
+        before.add(other, 1);
+        WaypointDigest after = new WaypointDigest();
+        after.add(changed, 2);
+        after.add(other, 1);
+
+        long[] expected = before.buckets();
+        long[] actual = after.buckets();
+        for (int i = 0; i < WaypointDigest.BUCKETS; i++) {
+            if (i == WaypointDigest.bucketOf(changed)) {
+                assertNotEquals(expected[i], actual[i]);
+            } else {
+                assertEquals(expected[i], actual[i]);
+            }
+        }
+    }
+
+    @Test
+    void duplicateEntriesDoNotCancelOut() {
+        UUID uuid = UUID.randomUUID();
+        WaypointDigest digest = new WaypointDigest();
+        digest.add(uuid, 7);
+        digest.add(uuid, 7);
+
+        assertNotEquals(0, digest.buckets()[WaypointDigest.bucketOf(uuid)]);
+    }
+
+    @Test
+    void bucketsAreInRange() {
+        for (int i = 0; i < 1000; i++) {
+            int bucket = WaypointDigest.bucketOf(UUID.randomUUID());
+            assertTrue(bucket >= 0 && bucket < WaypointDigest.BUCKETS);
+        }
+    }
+
+    @Test
+    void compactShareHasTheSameVersionAsTheOriginal() {
+        DimensionTable dimensions = new DimensionTable(List.of("minecraft:overworld"));
+        ShareCoordinatesPayload share = new ShareCoordinatesPayload(UUID.randomUUID(), UUID.randomUUID(),
+            10.03, 70.0, -4.97, "Farm", "minecraft:overworld", true, "plains");
+
+        ShareCoordinatesPayload received = CompactShareCoordinatesPayload.of(share, dimensions).toShare(dimensions);
+
+        assertEquals(WaypointDigest.version(share), WaypointDigest.version(received));
+    }
+
+    @Test
+    void versionChangesWithSharedFields() {
+        long version = WaypointDigest.version(1.0, 2.0, 3.0, "Home", "minecraft:overworld", false, "default");
+
+        assertNotEquals(version, WaypointDigest.version(1.0, 2.0, 3.0, "Home!", "minecraft:overworld", false, "default"));
+        assertNotEquals(version, WaypointDigest.version(1.0, 2.0, 3.0, "Home", "minecraft:overworld", true, "default"));
+        assertNotEquals(version, WaypointDigest.version(1.0, 2.0, 3.0, "Home", "minecraft:overworld", false, "ice"));
+        assertNotEquals(version, WaypointDigest.version(1.0, 2.0, 4.0, "Home", "minecraft:overworld", false, "default"));
+        assertEquals(version, WaypointDigest.version(1.0, 2.0, 3.0, "Home", "minecraft:overworld", false, "default"));
+    }
+}
@@ -0,0 +1,137 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.util.BackgroundWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CoordinatesJournalTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private static Coordinates entry(String description) {
+        return new Coordinates(1, 64, -1, description, "minecraft:overworld", false, "default");
+    }
+
+    /**
+     * Closes the journal, waits for the background writes and reads the directory back with a new journal.
+     */
+    private Map<UUID, Coordinates> reopen(CoordinatesJournal journal) {
+        journal.close();
+        assertTrue(BackgroundWriter.awaitPending(TIMEOUT_MILLIS));
+        return new CoordinatesJournal().open(directory);
+    }
+
+    @Test
+    void replaysPutsAndRemoves() {
+        CoordinatesJournal journal = new CoordinatesJournal();
+        assertTrue(journal.open(directory).isEmpty());
+        Coordinates kept = entry("kept");
+        Coordinates removed = entry("removed");
+        journal.put(kept);
+        journal.put(removed);
+        kept.description = "renamed";
+        journal.put(kept);
+        journal.remove(removed.uuid);
+        journal.flush(List.of(kept));
+
+        Map<UUID, Coordinates> entries = reopen(journal);
+
+        assertEquals(List.of(kept.uuid), List.copyOf(entries.keySet()));
+        assertEquals("renamed", entries.get(kept.uuid).description);
+    }
+
+    @Test
+    void openDoesNotRewriteTheSnapshot() {
+        CoordinatesJournal journal = new CoordinatesJournal();
+        journal.open(directory);
+        journal.put(entry("a"));
+        journal.flush(List.of());
+
+        reopen(journal);
+
+        assertFalse(Files.exists(directory.resolve("data.json")));
+        assertTrue(Files.exists(directory.resolve("data.journal")));
+    }
+
+    @Test
+    void dropsALineCutShortAndKeepsAppending() throws IOException {
+        CoordinatesJournal journal = new CoordinatesJournal();
+        journal.open(directory);
+        Coordinates first = entry("first");
+        journal.put(first);
+        journal.flush(List.of(first));
+        journal.close();
+        assertTrue(BackgroundWriter.awaitPending(TIMEOUT_MILLIS));
+        // A crash in the middle of a record
+        Files.writeString(directory.resolve("data.journal"), "{\"op\":\"put\",\"uu",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        CoordinatesJournal recovered = new CoordinatesJournal();
+        Map<UUID, Coordinates> entries = recovered.open(directory);
+        assertEquals(List.of(first.uuid), List.copyOf(entries.keySet()));
+        Coordinates second = entry("second");
+        recovered.put(second);
+        recovered.flush(List.of(first, second));
+
+        assertEquals(List.of(first.uuid, second.uuid), List.copyOf(reopen(recovered).keySet()));
+    }
+
+    @Test
+    void foldsInAnOldJournalLeftByAnInterruptedCompaction() throws IOException {
+        CoordinatesJournal journal = new CoordinatesJournal();
+        journal.open(directory);
+        Coordinates older = entry("older");
+        journal.put(older);
+        journal.flush(List.of(older));
+        journal.close();
+        assertTrue(BackgroundWriter.awaitPending(TIMEOUT_MILLIS));
+        Files.move(directory.resolve("data.journal"), directory.resolve("data.journal.old"));
+
+        journal = new CoordinatesJournal();
+        journal.open(directory);
+        Coordinates newer = entry("newer");
+        journal.put(newer);
+        journal.flush(List.of(older, newer));
+
+        Map<UUID, Coordinates> entries = reopen(journal);
+
+        assertEquals(List.of(older.uuid, newer.uuid), List.copyOf(entries.keySet()));
+        assertTrue(Files.exists(directory.resolve("data.json")));
+        assertFalse(Files.exists(directory.resolve("data.journal.old")));
+    }
+
+    @Test
+    void compactsALongJournalInTheBackground() throws IOException {
+        CoordinatesJournal journal = new CoordinatesJournal();
+        journal.open(directory);
+        Coordinates entry = entry("edited");
+        for (int i = 0; i < 2000; i++) {
+            entry.description = "edit " + i;
+            journal.put(entry);
+        }
+        journal.flush(List.of(entry));
+
+        Map<UUID, Coordinates> entries = reopen(journal);
+
+        assertEquals("edit 1999", entries.get(entry.uuid).description);
+        assertTrue(Files.exists(directory.resolve("data.json")));
+        assertFalse(Files.exists(directory.resolve("data.journal.old")));
+        assertTrue(Files.readAllLines(directory.resolve("data.journal")).isEmpty());
+    }
+}
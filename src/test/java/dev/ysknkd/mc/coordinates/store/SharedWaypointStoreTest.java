@@ -0,0 +1,117 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+import dev.ysknkd.mc.coordinates.network.ShareCoordinatesPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedWaypointStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static ShareCoordinatesPayload share(String description) {
+        return new ShareCoordinatesPayload(UUID.randomUUID(), UUID.randomUUID(), 1.5, 64, -3.25,
+            description, "minecraft:overworld", false, "default");
+    }
+
+    private Path log() {
+        return directory.resolve("shared_waypoints.log");
+    }
+
+    private Path bad() {
+        return directory.resolve("shared_waypoints.log.bad");
+    }
+
+    @AfterEach
+    void close() {
+        SharedWaypointStore.close();
+    }
+
+    @Test
+    void reloadsWhatWasShared() {
+        ShareCoordinatesPayload share = share("Base");
+        SharedWaypointStore.open(log());
+        SharedWaypointStore.put(share);
+        SharedWaypointStore.close();
+
+        SharedWaypointStore.open(log());
+
+        assertEquals(share, SharedWaypointStore.get(share.uuid()));
+        assertFalse(Files.exists(bad()));
+    }
+
+    @Test
+    void dropsOnlyAnIncompleteLastRecord() throws IOException {
+        ShareCoordinatesPayload first = share("First");
+        ShareCoordinatesPayload last = share("Last");
+        SharedWaypointStore.open(log());
+        SharedWaypointStore.put(first);
+        SharedWaypointStore.put(last);
+        SharedWaypointStore.close();
+        byte[] bytes = Files.readAllBytes(log());
+        Files.write(log(), Arrays.copyOf(bytes, bytes.length - 3));
+
+        SharedWaypointStore.open(log());
+
+        assertEquals(first, SharedWaypointStore.get(first.uuid()));
+        assertNull(SharedWaypointStore.get(last.uuid()));
+        assertFalse(Files.exists(bad()));
+    }
+
+    @Test
+    void setsAsideALogOfAnUnknownFormat() throws IOException {
+        byte[] bytes = "not a shared waypoint log".getBytes();
+        Files.write(log(), bytes);
+
+        SharedWaypointStore.open(log());
+        SharedWaypointStore.close();
+
+        assertArrayEquals(bytes, Files.readAllBytes(bad()));
+    }
+
+    @Test
+    void setsAsideALogThatCannotBeReadToItsEnd() throws IOException {
+        ShareCoordinatesPayload share = share("Kept");
+        SharedWaypointStore.open(log());
+        SharedWaypointStore.put(share);
+        SharedWaypointStore.close();
+        // A record of an unknown type, followed by one that cannot be reached
+        Files.write(log(), new byte[]{9, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+        byte[] bytes = Files.readAllBytes(log());
+
+        SharedWaypointStore.open(log());
+
+        assertEquals(share, SharedWaypointStore.get(share.uuid()));
+        assertArrayEquals(bytes, Files.readAllBytes(bad()));
+
+        // What could be read is still written to a fresh log
+        SharedWaypointStore.close();
+        SharedWaypointStore.open(log());
+        assertEquals(share, SharedWaypointStore.get(share.uuid()));
+    }
+
+    @Test
+    void keepsEarlierLogsSetAside() throws IOException {
+        Files.write(bad(), new byte[]{1});
+        Files.write(log(), new byte[]{2, 2, 2, 2, 2, 2, 2, 2});
+
+        SharedWaypointStore.open(log());
+
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(bad()));
+        assertTrue(Files.exists(directory.resolve("shared_waypoints.log.bad.1")));
+    }
+}
@@ -0,0 +1,119 @@
+package dev.ysknkd.mc.coordinates.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class WaypointIndexTest {
+
+    private static final String OVERWORLD = "minecraft:overworld";
+    private static final String NETHER = "minecraft:the_nether";
+
+    private static Coordinates entry(double x, double y, double z, String world) {
+        return new Coordinates(x, y, z, "", world, false, "default");
+    }
+
+    private static double distanceSq(Coordinates entry, double x, double y, double z) {
+        double dx = entry.x - x;
+        double dy = entry.y - y;
+        double dz = entry.z - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    @Test
+    void nearestMatchesABruteForceScan() {
+        Random random = new Random(42);
+        WaypointIndex index = new WaypointIndex();
+        List<Coordinates> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Coordinates entry = entry(random.nextGaussian() * 2000, random.nextInt(320) - 64, random.nextGaussian() * 2000, OVERWORLD);
+            entries.add(entry);
+            index.update(entry);
+        }
+        for (int query = 0; query < 50; query++) {
+            double x = random.nextGaussian() * 3000;
+            double y = 64;
+            double z = random.nextGaussian() * 3000;
+            List<Coordinates> expected = new ArrayList<>(entries);
+            expected.sort(Comparator.comparingDouble(entry -> distanceSq(entry, x, y, z)));
+
+            assertEquals(expected.subList(0, 10), index.nearest(OVERWORLD, x, y, z, 10));
+        }
+    }
+
+    @Test
+    void nearestReturnsEverythingWhenAskedForMore() {
+        WaypointIndex index = new WaypointIndex();
+        Coordinates near = entry(1, 0, 1, OVERWORLD);
+        Coordinates far = entry(100000, 0, -100000, OVERWORLD);
+        index.update(far);
+        index.update(near);
+
+        assertEquals(List.of(near, far), index.nearest(OVERWORLD, 0, 0, 0, 5));
+    }
+
+    @Test
+    void queriesAreScopedToTheWorld() {
+        WaypointIndex index = new WaypointIndex();
+        Coordinates overworld = entry(0, 64, 0, OVERWORLD);
+        Coordinates nether = entry(0, 64, 0, NETHER);
+        index.update(overworld);
+        index.update(nether);
+
+        assertEquals(List.of(overworld), index.nearest(OVERWORLD, 0, 64, 0, 10));
+        assertEquals(List.of(nether), index.within(NETHER, 0, 64, 0, 1));
+        assertTrue(index.nearest("minecraft:the_end", 0, 64, 0, 10).isEmpty());
+    }
+
+    @Test
+    void inBoxIncludesBoundsAcrossCells() {
+        WaypointIndex index = new WaypointIndex();
+        Coordinates corner = entry(-128, 0, 255, OVERWORLD);
+        Coordinates inside = entry(50, 10, 50, OVERWORLD);
+        Coordinates outside = entry(256.5, 0, 0, OVERWORLD);
+        Coordinates tooHigh = entry(0, 101, 0, OVERWORLD);
+        for (Coordinates entry : List.of(corner, inside, outside, tooHigh)) {
+            index.update(entry);
+        }
+
+        Set<Coordinates> found = new HashSet<>(index.inBox(OVERWORLD, -128, 0, -128, 256, 100, 255));
+
+        assertEquals(Set.of(corner, inside), found);
+    }
+
+    @Test
+    void withinUsesThreeDimensionalDistance() {
+        WaypointIndex index = new WaypointIndex();
+        Coordinates level = entry(30, 64, 40, OVERWORLD);
+        Coordinates below = entry(0, 0, 0, OVERWORLD);
+        index.update(level);
+        index.update(below);
+
+        assertEquals(List.of(level), index.within(OVERWORLD, 0, 64, 0, 50));
+    }
+
+    @Test
+    void updateMovesAndRemoveForgets() {
+        WaypointIndex index = new WaypointIndex();
+        Coordinates entry = entry(0, 64, 0, OVERWORLD);
+        index.update(entry);
+
+        entry.x = 5000;
+        entry.world = NETHER;
+        index.update(entry);
+
+        assertTrue(index.within(OVERWORLD, 0, 64, 0, 10).isEmpty());
+        assertEquals(List.of(entry), index.within(NETHER, 5000, 64, 0, 10));
+
+        index.remove(entry.uuid);
+        assertTrue(index.nearest(NETHER, 5000, 64, 0, 1).isEmpty());
+    }
+}
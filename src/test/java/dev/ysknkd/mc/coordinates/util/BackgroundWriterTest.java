@@ -0,0 +1,46 @@
+package dev.ysknkd.mc.coordinates.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BackgroundWriterTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void writeWithoutDelayIsForgottenOnceItRan() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            Object key = new Object();
+            Future<?> write = BackgroundWriter.debounce(key, 0, () -> { });
+            write.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            // The entry is removed before the write runs
+            assertFalse(BackgroundWriter.isPending(key));
+        }
+    }
+
+    @Test
+    void burstOfWritesRunsOnlyTheLast() {
+        Object key = new Object();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 1; i <= 10; i++) {
+            int value = i;
+            BackgroundWriter.debounce(key, 60_000, () -> {
+                runs.incrementAndGet();
+                written.set(value);
+            });
+        }
+
+        assertTrue(BackgroundWriter.awaitPending(TIMEOUT_MILLIS));
+        assertEquals(1, runs.get());
+        assertEquals(10, written.get());
+        assertFalse(BackgroundWriter.isPending(key));
+    }
+}